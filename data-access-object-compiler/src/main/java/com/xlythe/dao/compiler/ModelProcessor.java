@@ -0,0 +1,345 @@
+package com.xlythe.dao.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a ModelAdapter for every concrete BaseModel subclass, so that models can be read from
+ * and written to cursors, ContentValues and JSON without reflection.
+ *
+ * Works with both annotationProcessor (Java) and kapt (Kotlin). Persisted fields must either be
+ * non-private or expose a getter and setter, otherwise the model is skipped and falls back to
+ * reflection at runtime.
+ */
+public class ModelProcessor extends AbstractProcessor {
+    private static final String BASE_MODEL = "com.xlythe.dao.BaseModel";
+    private static final String MODEL_ADAPTER = "com.xlythe.dao.ModelAdapter";
+    private static final String SCHEMA = "com.xlythe.dao.Schema";
+    private static final String SUFFIX = "_ModelAdapter";
+    private static final String _ID = "_id";
+
+    private enum Type {
+        INT, LONG, FLOAT, BOOLEAN, STRING, BYTE_ARRAY
+    }
+
+    private static class Column {
+        String name;
+        Type type;
+        boolean direct;
+        String getter;
+        String setter;
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // Models don't need to be annotated, so we look at every class that's compiled.
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement baseModel = processingEnv.getElementUtils().getTypeElement(BASE_MODEL);
+        if (baseModel == null) {
+            return false;
+        }
+
+        TypeMirror baseModelType = processingEnv.getTypeUtils().erasure(baseModel.asType());
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            process(type, baseModelType);
+        }
+        return false;
+    }
+
+    private void process(TypeElement type, TypeMirror baseModelType) {
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            process(nested, baseModelType);
+        }
+
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT)
+                || type.getModifiers().contains(Modifier.PRIVATE)
+                || !type.getTypeParameters().isEmpty()
+                || (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))
+                || !processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()), baseModelType)) {
+            return;
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)
+                    || field.getModifiers().contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+
+            Column column = new Column();
+            column.name = getName(field);
+            column.type = getType(field.asType());
+            if (column.type == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        field.asType() + " is not supported, falling back to reflection", field);
+                return;
+            }
+            if (!bindAccessors(type, field, column)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "Field " + field.getSimpleName() + " is private and has no getter/setter, falling back to reflection", field);
+                return;
+            }
+            columns.add(column);
+        }
+
+        try {
+            write(type, columns);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to generate adapter: " + e.getMessage(), type);
+        }
+    }
+
+    private String getName(VariableElement field) {
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(SCHEMA)) {
+                continue;
+            }
+            for (ExecutableElement key : annotation.getElementValues().keySet()) {
+                if (key.getSimpleName().contentEquals("columnName")) {
+                    AnnotationValue value = annotation.getElementValues().get(key);
+                    String columnName = (String) value.getValue();
+                    if (!columnName.isEmpty()) {
+                        return columnName;
+                    }
+                }
+            }
+        }
+        return field.getSimpleName().toString();
+    }
+
+    private Type getType(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return Type.INT;
+            case LONG:
+                return Type.LONG;
+            case FLOAT:
+                return Type.FLOAT;
+            case BOOLEAN:
+                return Type.BOOLEAN;
+            case ARRAY:
+                return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE ? Type.BYTE_ARRAY : null;
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                return element.getQualifiedName().contentEquals(String.class.getName()) ? Type.STRING : null;
+            default:
+                return null;
+        }
+    }
+
+    private boolean bindAccessors(TypeElement type, VariableElement field, Column column) {
+        String name = field.getSimpleName().toString();
+        if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+            column.direct = true;
+            column.getter = name;
+            column.setter = name;
+            return true;
+        }
+
+        // Kotlin names the accessors of 'isFoo' as 'isFoo()' and 'setFoo()'.
+        String property = name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))
+                ? name.substring(2)
+                : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            TypeMirror fieldType = field.asType();
+            if (method.getParameters().isEmpty()
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), fieldType)
+                    && (methodName.equals("get" + property) || methodName.equals("is" + property))) {
+                column.getter = methodName + "()";
+            } else if (method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), fieldType)
+                    && methodName.equals("set" + property)) {
+                column.setter = methodName;
+            }
+        }
+        return column.getter != null && column.setter != null;
+    }
+
+    private void write(TypeElement type, List<Column> columns) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String adapterName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + SUFFIX;
+        String modelName = type.getQualifiedName().toString();
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? adapterName : packageName + "." + adapterName, type);
+        try (Writer writer = file.openWriter()) {
+            StringBuilder out = new StringBuilder();
+            if (!packageName.isEmpty()) {
+                out.append("package ").append(packageName).append(";\n\n");
+            }
+            out.append("/** Generated by data-access-object-compiler. Do not modify. */\n");
+            out.append("public final class ").append(adapterName).append(" extends ")
+                    .append(MODEL_ADAPTER).append("<").append(modelName).append("> {\n");
+
+            // Column names, in the order that the cursor indices are passed in
+            out.append("    private static final String[] COLUMNS = {");
+            for (Column column : columns) {
+                out.append(" \"").append(column.name).append("\",");
+            }
+            out.append(" \"").append(_ID).append("\" };\n\n");
+            out.append("    @Override\n");
+            out.append("    public String[] getColumnNames() {\n");
+            out.append("        return COLUMNS;\n");
+            out.append("    }\n\n");
+
+            // Cursor
+            out.append("    @Override\n");
+            out.append("    public void inflate(").append(modelName).append(" instance, android.database.Cursor cursor, int[] indices) {\n");
+            for (int i = 0; i < columns.size(); i++) {
+                out.append("        if (indices[").append(i).append("] != -1) {\n");
+                out.append("            ").append(write(columns.get(i), readCursor(columns.get(i), i))).append("\n");
+                out.append("        }\n");
+            }
+            out.append("        if (indices[").append(columns.size()).append("] != -1) {\n");
+            out.append("            set_Id(instance, cursor.getLong(indices[").append(columns.size()).append("]));\n");
+            out.append("        }\n");
+            out.append("    }\n\n");
+
+            // JSONObject
+            out.append("    @Override\n");
+            out.append("    public void inflate(").append(modelName).append(" instance, org.json.JSONObject object) throws org.json.JSONException {\n");
+            for (Column column : columns) {
+                out.append("        if (!object.isNull(\"").append(column.name).append("\")) {\n");
+                out.append("            ").append(write(column, readJson(column))).append("\n");
+                out.append("        }\n");
+            }
+            out.append("        if (object.has(\"").append(_ID).append("\") && !object.isNull(\"").append(_ID).append("\")) {\n");
+            out.append("            set_Id(instance, object.getLong(\"").append(_ID).append("\"));\n");
+            out.append("        }\n");
+            out.append("    }\n\n");
+
+            // ContentValues
+            out.append("    @Override\n");
+            out.append("    public void getContentValues(").append(modelName).append(" instance, android.content.ContentValues values) {\n");
+            for (Column column : columns) {
+                String value = read(column);
+                if (column.type == Type.BOOLEAN) {
+                    value = value + " ? 1 : 0";
+                }
+                out.append("        values.put(\"").append(column.name).append("\", ").append(value).append(");\n");
+            }
+            out.append("        values.put(\"").append(_ID).append("\", get_Id(instance));\n");
+            out.append("    }\n\n");
+
+            // JSONObject
+            out.append("    @Override\n");
+            out.append("    public void getJSONObject(").append(modelName).append(" instance, org.json.JSONObject object) throws org.json.JSONException {\n");
+            for (Column column : columns) {
+                switch (column.type) {
+                    case BYTE_ARRAY:
+                        out.append("        {\n");
+                        out.append("            byte[] bytes = ").append(read(column)).append(";\n");
+                        out.append("            if (bytes != null) {\n");
+                        out.append("                object.put(\"").append(column.name)
+                                .append("\", android.util.Base64.encodeToString(bytes, android.util.Base64.DEFAULT));\n");
+                        out.append("            }\n");
+                        out.append("        }\n");
+                        break;
+                    case STRING:
+                        out.append("        object.put(\"").append(column.name).append("\", (Object) ").append(read(column)).append(");\n");
+                        break;
+                    default:
+                        out.append("        object.put(\"").append(column.name).append("\", ").append(read(column)).append(");\n");
+                        break;
+                }
+            }
+            out.append("        object.put(\"").append(_ID).append("\", get_Id(instance));\n");
+            out.append("    }\n");
+            out.append("}\n");
+            writer.write(out.toString());
+        }
+    }
+
+    private static String read(Column column) {
+        return "instance." + column.getter;
+    }
+
+    private static String write(Column column, String value) {
+        if (column.direct) {
+            return "instance." + column.setter + " = " + value + ";";
+        }
+        return "instance." + column.setter + "(" + value + ");";
+    }
+
+    private static String readCursor(Column column, int position) {
+        String index = "indices[" + position + "]";
+        switch (column.type) {
+            case INT:
+                return "cursor.getInt(" + index + ")";
+            case LONG:
+                return "cursor.getLong(" + index + ")";
+            case FLOAT:
+                return "cursor.getFloat(" + index + ")";
+            case BOOLEAN:
+                return "1 == cursor.getInt(" + index + ")";
+            case STRING:
+                return "cursor.getString(" + index + ")";
+            case BYTE_ARRAY:
+                return "cursor.getBlob(" + index + ")";
+            default:
+                throw new IllegalArgumentException(column.type + " is not supported");
+        }
+    }
+
+    private static String readJson(Column column) {
+        String name = "\"" + column.name + "\"";
+        switch (column.type) {
+            case INT:
+                return "object.getInt(" + name + ")";
+            case LONG:
+                return "object.getLong(" + name + ")";
+            case FLOAT:
+                return "(float) object.getDouble(" + name + ")";
+            case BOOLEAN:
+                return "object.getBoolean(" + name + ")";
+            case STRING:
+                return "object.getString(" + name + ")";
+            case BYTE_ARRAY:
+                return "android.util.Base64.decode(object.getString(" + name + "), android.util.Base64.DEFAULT)";
+            default:
+                throw new IllegalArgumentException(column.type + " is not supported");
+        }
+    }
+}
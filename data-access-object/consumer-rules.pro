@@ -0,0 +1,4 @@
+# Generated adapters are looked up by name at runtime.
+-keep class * extends com.xlythe.dao.ModelAdapter {
+    <init>();
+}
@@ -0,0 +1,117 @@
+package com.xlythe.dao;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in a model's table, passed to {@link Model.Observer#onChange(ChangeSet)}. If changes
+ * are being coalesced (see {@link Model#setObserverCoalescingWindow}), this holds every change
+ * since the last callback, in the order they were made.
+ */
+public final class ChangeSet {
+    public enum Operation {
+        /** A new row was inserted */
+        INSERT,
+        /** A row was inserted, or the row that shares its unique values (or _id) was updated */
+        SAVE,
+        /** A row was deleted */
+        DELETE
+    }
+
+    /**
+     * A single row that was written
+     */
+    public static final class Change {
+        private final Operation mOperation;
+        private final long mId;
+        private final Object mKey;
+
+        Change(Operation operation, long id, Object key) {
+            mOperation = operation;
+            mId = id;
+            mKey = key;
+        }
+
+        public Operation getOperation() {
+            return mOperation;
+        }
+
+        /**
+         * Returns the row's _id, or 0 if it isn't known. Models saved by their unique values keep
+         * whatever _id they had, so use {@link #getKey()} for those.
+         */
+        public long getId() {
+            return mId;
+        }
+
+        /**
+         * Returns the row's first @Unique value, or null if the model doesn't have one
+         */
+        public Object getKey() {
+            return mKey;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return mOperation + "{_id=" + mId + ", key=" + mKey + "}";
+        }
+    }
+
+    private final List<Change> mChanges;
+    private final boolean mComplete;
+
+    private ChangeSet(List<Change> changes, boolean complete) {
+        mChanges = Collections.unmodifiableList(changes);
+        mComplete = complete;
+    }
+
+    static ChangeSet of(Operation operation, BaseModel<?> instance) {
+        return of(operation, Collections.singletonList(instance));
+    }
+
+    static ChangeSet of(Operation operation, Collection<? extends BaseModel<?>> instances) {
+        List<Change> changes = new ArrayList<>(instances.size());
+        for (BaseModel<?> instance : instances) {
+            changes.add(new Change(operation, instance._id, instance.getUniqueKey()));
+        }
+        return new ChangeSet(changes, /*complete=*/true);
+    }
+
+    /**
+     * For writes that don't say which rows they touched (eg. {@link Model.Query#update(Param...)} or
+     * {@link Model.Query#delete()})
+     */
+    static ChangeSet unknown() {
+        return new ChangeSet(new ArrayList<>(), /*complete=*/false);
+    }
+
+    /**
+     * Wraps the list without copying it, so it must not be changed afterwards
+     */
+    static ChangeSet of(List<Change> changes, boolean complete) {
+        return new ChangeSet(changes, complete);
+    }
+
+    public List<Change> getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * Returns false if rows changed that aren't listed in {@link #getChanges()}, in which case
+     * anything read from the table should be reloaded.
+     */
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ChangeSet{changes=" + mChanges + ", complete=" + mComplete + "}";
+    }
+}
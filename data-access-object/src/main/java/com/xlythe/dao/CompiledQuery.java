@@ -0,0 +1,116 @@
+package com.xlythe.dao;
+
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * A query that's been compiled once so that it can be run many times with different arguments,
+ * eg. inside of a loop. Arguments are bound in the same order as the where() clauses of the
+ * query that created it. Only comparisons (eg. key = value, key < value) take an argument. IS NULL,
+ * IN and OR params are kept exactly as they were written, so they can't bind more than
+ * {@link Param#MAX_BOUND_ARGUMENTS} in total.
+ *
+ * Holds the database open until it's closed. Not thread safe.
+ */
+public class CompiledQuery<Q extends Model<Q>> implements Closeable {
+    private final ModelDataSource<Q> mDataSource;
+    private final Param[] mTemplates;
+    private final int mArgumentCount;
+    private final String mOrderBy;
+    private final String mQuery;
+
+    private SQLiteStatement mCountStatement;
+    private SQLiteStatement mDeleteStatement;
+    private String mSelectStatement;
+    private String mFirstStatement;
+    private boolean mClosed;
+
+    CompiledQuery(ModelDataSource<Q> dataSource, Param[] params, String orderBy) {
+        mDataSource = dataSource;
+        mTemplates = params;
+        int argumentCount = 0;
+        for (Param param : params) {
+            if (param.isComparison()) {
+                argumentCount++;
+            }
+        }
+        mArgumentCount = argumentCount;
+        mOrderBy = orderBy;
+        mQuery = dataSource.createParameterizedQuery(params);
+    }
+
+    public long count(Object... args) {
+        Param[] params = getParams(args);
+        if (mCountStatement == null) {
+            mCountStatement = mDataSource.compileStatement(mDataSource.createCountStatement(mQuery));
+        }
+        try {
+            ModelDataSource.bind(mCountStatement, 1, params);
+            return mCountStatement.simpleQueryForLong();
+        } finally {
+            mCountStatement.clearBindings();
+        }
+    }
+
+    public Q first(Object... args) {
+        Param[] params = getParams(args);
+        if (mFirstStatement == null) {
+            mFirstStatement = mDataSource.createSelectStatement(mQuery, mOrderBy, "1");
+        }
+        List<Q> list = mDataSource.rawQuery(mFirstStatement, params);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    public List<Q> all(Object... args) {
+        Param[] params = getParams(args);
+        if (mSelectStatement == null) {
+            mSelectStatement = mDataSource.createSelectStatement(mQuery, mOrderBy, null);
+        }
+        return mDataSource.rawQuery(mSelectStatement, params);
+    }
+
+    public int delete(Object... args) {
+        Param[] params = getParams(args);
+        if (mDeleteStatement == null) {
+            mDeleteStatement = mDataSource.compileStatement(mDataSource.createDeleteStatement(mQuery));
+        }
+        try {
+            ModelDataSource.bind(mDeleteStatement, 1, params);
+            return mDeleteStatement.executeUpdateDelete();
+        } finally {
+            mDeleteStatement.clearBindings();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        if (mCountStatement != null) {
+            mCountStatement.close();
+        }
+        if (mDeleteStatement != null) {
+            mDeleteStatement.close();
+        }
+        mDataSource.close();
+    }
+
+    private Param[] getParams(Object... args) {
+        if (mClosed) {
+            throw new IllegalStateException("CompiledQuery has already been closed");
+        }
+        if (args.length != mArgumentCount) {
+            throw new IllegalArgumentException("Expected " + mArgumentCount + " arguments, but got " + args.length);
+        }
+        Param[] params = new Param[mTemplates.length];
+        int j = 0;
+        for (int i = 0; i < mTemplates.length; i++) {
+            params[i] = mTemplates[i].isComparison() ? mTemplates[i].withValue(args[j++]) : mTemplates[i];
+        }
+        return params;
+    }
+}
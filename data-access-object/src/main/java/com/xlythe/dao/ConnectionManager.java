@@ -0,0 +1,131 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.xlythe.dao.BaseModel.DEBUG;
+import static com.xlythe.dao.Model.TAG;
+
+/**
+ * Keeps one connection open per database, shared across the whole process. Connections are
+ * reference counted, and are only closed once they've sat unused for the idle timeout.
+ *
+ * Lock order: a ModelHelper's lock may be held while taking ours, but never the other way around.
+ */
+public final class ConnectionManager {
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10_000;
+
+    private static final Map<String, ModelHelper> HELPERS = new HashMap<>();
+    private static final Map<ModelHelper, ScheduledFuture<?>> PENDING_CLOSES = new HashMap<>();
+
+    private static ScheduledExecutorService sScheduler;
+    private static long sIdleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    private ConnectionManager() {}
+
+    /**
+     * Sets how long a database is kept open after its last operation finishes. A timeout of 0
+     * closes the database as soon as it's no longer in use.
+     */
+    public static void setIdleTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must be non-negative");
+        }
+        synchronized (HELPERS) {
+            sIdleTimeoutMillis = unit.toMillis(timeout);
+        }
+    }
+
+    /**
+     * Closes every database that's not currently in use.
+     */
+    public static void closeIdleConnections() {
+        List<ModelHelper> helpers;
+        synchronized (HELPERS) {
+            helpers = new ArrayList<>(HELPERS.values());
+        }
+        for (ModelHelper helper : helpers) {
+            helper.closeIfIdle();
+        }
+    }
+
+    static ModelHelper getHelper(Context context, ModelInfo<?> info) {
+        Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        ModelHelper staleHelper = null;
+        ModelHelper helper;
+        synchronized (HELPERS) {
+            helper = HELPERS.get(info.getDatabaseName());
+            if (helper == null || helper.getContext() != applicationContext) {
+                staleHelper = helper;
+
+                // The database version is owned by the first model that opens the database.
+                helper = new ModelHelper(applicationContext, info.getDatabaseName(), info.getDatabaseVersion());
+                HELPERS.put(info.getDatabaseName(), helper);
+            }
+        }
+        if (staleHelper != null) {
+            staleHelper.closeIfIdle();
+        }
+        return helper;
+    }
+
+    /**
+     * Called when a database has no more users. Closes it after the idle timeout, unless it's
+     * acquired again before then.
+     */
+    static void onIdle(final ModelHelper helper) {
+        synchronized (HELPERS) {
+            if (sIdleTimeoutMillis > 0) {
+                scheduleClose(helper);
+                return;
+            }
+        }
+        helper.closeIfIdle();
+    }
+
+    // Must be called while holding HELPERS
+    private static void scheduleClose(final ModelHelper helper) {
+        if (sScheduler == null) {
+            sScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "DAO-ConnectionManager");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        cancelClose(helper);
+        PENDING_CLOSES.put(helper, sScheduler.schedule(() -> {
+            synchronized (HELPERS) {
+                PENDING_CLOSES.remove(helper);
+            }
+            if (DEBUG) Log.d(TAG, "Closing idle database " + helper.getDatabaseName());
+            helper.closeIfIdle();
+        }, sIdleTimeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Called when a database is acquired again, so that a pending close doesn't interrupt it.
+     */
+    static void onActive(ModelHelper helper) {
+        synchronized (HELPERS) {
+            cancelClose(helper);
+        }
+    }
+
+    // Must be called while holding HELPERS
+    private static void cancelClose(ModelHelper helper) {
+        ScheduledFuture<?> pendingClose = PENDING_CLOSES.remove(helper);
+        if (pendingClose != null) {
+            pendingClose.cancel(false);
+        }
+    }
+}
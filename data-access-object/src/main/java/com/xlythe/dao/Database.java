@@ -12,4 +12,44 @@ public @interface Database {
     boolean retainDataOnUpgrade() default false;
     String tableName() default "";
     String name() default "";
+    Layout layout() default Layout.AUTOINCREMENT;
+
+    /**
+     * The number of rows to keep in memory, so that looking them up again by their unique values
+     * (or _id) skips the database. See {@link EntityCache}. 0 disables the cache.
+     */
+    int cacheSize() default 0;
+
+    /**
+     * Whether every query of this model is served from the {@link QueryCache}. Queries can also opt
+     * in one at a time with {@link Model.Query#cached()}.
+     */
+    boolean cacheQueries() default false;
+
+    /**
+     * Whether to keep the whole table in memory once it's first read, for small tables that are
+     * read far more often than they're written. See {@link TableMirror}.
+     */
+    boolean mirror() default false;
+
+    /**
+     * How rows are keyed on disk. Changing the layout of an existing table requires a version bump
+     * with retainDataOnUpgrade=false.
+     */
+    enum Layout {
+        /** A separate _id integer primary key autoincrement column. Ids are never reused. */
+        AUTOINCREMENT,
+        /** A separate _id integer primary key column. The ids of deleted rows may be reused. */
+        ROWID,
+        /**
+         * The model's only @Unique field, which must be an int or long, is the rowid. There's no
+         * separate _id column, and get_Id() returns the key once the model is saved.
+         */
+        UNIQUE_ROWID,
+        /**
+         * The table is stored WITHOUT ROWID, keyed by the @Unique fields. _id is kept as an
+         * ordinary indexed column so that get_Id() still works. Requires SQLite 3.8.2 (API 21).
+         */
+        WITHOUT_ROWID
+    }
 }
@@ -0,0 +1,213 @@
+package com.xlythe.dao;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.xlythe.dao.BaseModel._ID;
+import static com.xlythe.dao.Model.TAG;
+import static com.xlythe.dao.Util.newInstance;
+
+/**
+ * Keeps the most recently read instances of a model in memory, keyed by their unique values (or
+ * _id, if the model has no @Unique fields), so that looking one up again with first() skips SQLite.
+ * Enabled per model with {@link Database#cacheSize()}.
+ *
+ * The cache keeps its own copy of every row, and every lookup returns a new copy, so changing a
+ * model that came from the cache doesn't change what anyone else reads. Any write to the table
+ * through this library evicts the rows it touched, or the whole cache if it can't tell which rows
+ * those were.
+ */
+public final class EntityCache<T extends BaseModel<T>> {
+    private static final List<EntityCache<?>> CACHES = new CopyOnWriteArrayList<>();
+    private static boolean sRegistered;
+
+    /**
+     * Returns the model's cache, or null if the model isn't cached
+     */
+    public static <T extends BaseModel<T>> EntityCache<T> get(Class<T> clazz) {
+        return ModelInfo.get(clazz).getCache();
+    }
+
+    /**
+     * Shrinks every cache in response to {@link ComponentCallbacks2#onTrimMemory(int)}. This is
+     * called automatically once any cached model has been used.
+     */
+    public static void trimMemory(int level) {
+        for (EntityCache<?> cache : CACHES) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                cache.clear();
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                cache.mEntries.trimToSize(cache.mEntries.maxSize() / 2);
+            }
+        }
+    }
+
+    static synchronized void registerComponentCallbacks(Context context) {
+        if (sRegistered) {
+            return;
+        }
+        sRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {}
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    private final ModelInfo<T> mInfo;
+    private final LruCache<List<String>, T> mEntries;
+
+    // Held while the generation is checked or bumped, so that a write can't slip in between
+    private final Object mLock = new Object();
+
+    // Bumped by every write, so that a row read before the write isn't cached after it
+    private final AtomicLong mGeneration = new AtomicLong();
+
+    EntityCache(ModelInfo<T> info, int maxSize) {
+        mInfo = info;
+        mEntries = new LruCache<>(maxSize);
+        CACHES.add(this);
+    }
+
+    /**
+     * Returns a copy of the cached instance that the params look up, or null if it isn't cached.
+     * Only queries that match on every unique value (or on _id alone) are looked up.
+     */
+    T get(Context context, Param... params) {
+        List<String> key = getKey(params);
+        T instance = key == null ? null : mEntries.get(key);
+        return instance == null ? null : Transcriber.copy(instance, newInstance(mInfo.getModelClass(), context));
+    }
+
+    /**
+     * Returns a marker to pass to {@link #put(BaseModel, long, Param...)}, taken before the row is read
+     */
+    long getGeneration() {
+        return mGeneration.get();
+    }
+
+    /**
+     * Caches a copy of the instance that the params looked up, unless the table was written to
+     * since the generation was taken
+     */
+    void put(Context context, T instance, long generation, Param... params) {
+        List<String> key = getKey(params);
+        if (key == null || !key.equals(getKey(instance))) {
+            return;
+        }
+        T copy = Transcriber.copy(instance, newInstance(mInfo.getModelClass(), context));
+        synchronized (mLock) {
+            if (mGeneration.get() != generation) {
+                return;
+            }
+            mEntries.put(key, copy);
+        }
+    }
+
+    /**
+     * Evicts the instance's row, because it's been written to. Only copies are handed out, so if
+     * the instance's unique values were changed, it was a different row that was written to.
+     */
+    void invalidate(T instance) {
+        List<String> key = getKey(instance);
+        synchronized (mLock) {
+            mGeneration.incrementAndGet();
+            if (key != null) {
+                mEntries.remove(key);
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (mLock) {
+            mGeneration.incrementAndGet();
+            mEntries.evictAll();
+        }
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public int maxSize() {
+        return mEntries.maxSize();
+    }
+
+    public int hitCount() {
+        return mEntries.hitCount();
+    }
+
+    public int missCount() {
+        return mEntries.missCount();
+    }
+
+    public int evictionCount() {
+        return mEntries.evictionCount();
+    }
+
+    private List<String> getKey(Param... params) {
+        String[] columns = getKeyColumns();
+        if (params.length != columns.length) {
+            return null;
+        }
+        String[] values = new String[columns.length];
+        for (Param param : params) {
+            if (!param.isEquality() || param.getParameterizedValue() == null) {
+                return null;
+            }
+            int index = Arrays.asList(columns).indexOf(param.getKey());
+            if (index == -1 || values[index] != null) {
+                return null;
+            }
+            values[index] = param.getParameterizedValue();
+        }
+        return Arrays.asList(values);
+    }
+
+    private List<String> getKey(T instance) {
+        String[] columns = getKeyColumns();
+        if (columns.length == 1 && _ID.equals(columns[0])) {
+            return instance._id == 0 ? null : Arrays.asList(Long.toString(instance._id));
+        }
+
+        Field[] fields = mInfo.getUniqueFields();
+        List<String> values = new ArrayList<>(fields.length);
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                String value = new Param(columns[i], fields[i].get(instance)).getParameterizedValue();
+                if (value == null) {
+                    return null;
+                }
+                values.add(value);
+            }
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Failed to read field", e);
+            return null;
+        }
+        return values;
+    }
+
+    private String[] getKeyColumns() {
+        String[] uniqueColumns = mInfo.getUniqueColumns();
+        return uniqueColumns.length == 0 ? new String[] { _ID } : uniqueColumns;
+    }
+}
@@ -0,0 +1,55 @@
+package com.xlythe.dao;
+
+import java.util.Map;
+
+/**
+ * Aggregates the rows of a query in groups that share a column's value. The results map each of
+ * the column's values to that group's result. See {@link Model.Query#groupBy(String)}.
+ */
+public class GroupBy<Q extends Model<Q>> {
+    private final Model.Query<Q> mQuery;
+    private final String mColumn;
+
+    GroupBy(Model.Query<Q> query, String column) {
+        mQuery = query;
+        mColumn = column;
+    }
+
+    public Map<String, Long> count() {
+        ModelDataSource<Q> dataSource = mQuery.open();
+        try {
+            return dataSource.groupCount(mColumn, mQuery.getOrderBy(), mQuery.getParams());
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    public Map<String, Double> sum(String column) {
+        mQuery.checkNumericColumn(column);
+        return aggregate("TOTAL(" + mQuery.getSqlColumn(column) + ")");
+    }
+
+    public Map<String, Double> min(String column) {
+        mQuery.checkNumericColumn(column);
+        return aggregate("MIN(" + mQuery.getSqlColumn(column) + ")");
+    }
+
+    public Map<String, Double> max(String column) {
+        mQuery.checkNumericColumn(column);
+        return aggregate("MAX(" + mQuery.getSqlColumn(column) + ")");
+    }
+
+    public Map<String, Double> avg(String column) {
+        mQuery.checkNumericColumn(column);
+        return aggregate("AVG(" + mQuery.getSqlColumn(column) + ")");
+    }
+
+    private Map<String, Double> aggregate(String function) {
+        ModelDataSource<Q> dataSource = mQuery.open();
+        try {
+            return dataSource.groupAggregate(mColumn, function, mQuery.getOrderBy(), mQuery.getParams());
+        } finally {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.xlythe.dao;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Adds an index to the model's table. On a field, indexes that field's column. On the model's
+ * class, indexes the listed columns. Use {@link Indices} to add more than one index to a class.
+ */
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Index {
+    // Defaults to the indexed columns
+    String name() default "";
+    // Ignored on fields
+    String[] columns() default {};
+    boolean unique() default false;
+    // Only rows that match this SQL expression are indexed
+    String where() default "";
+}
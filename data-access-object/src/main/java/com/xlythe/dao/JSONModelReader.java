@@ -0,0 +1,115 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+import android.util.JsonReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.xlythe.dao.Util.newInstance;
+
+/**
+ * Reads models out of a JSON array one at a time, so that only a single model's worth of JSON is
+ * held in memory at once, no matter how large the array is.
+ *
+ * Malformed JSON is reported as an {@link IllegalStateException}, same as {@link com.xlythe.dao.remote.JSONResult}.
+ */
+final class JSONModelReader<T extends BaseModel<T>> implements Iterator<T>, Closeable {
+    private final Class<T> mClass;
+    private final Context mContext;
+    private final JsonReader mReader;
+    private boolean mStarted;
+
+    JSONModelReader(Class<T> clazz, Context context, JsonReader reader) {
+        mClass = clazz;
+        mContext = context;
+        mReader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!mStarted) {
+                mReader.beginArray();
+                mStarted = true;
+            }
+            return mReader.hasNext();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return Transcriber.inflate(newInstance(mClass, mContext), readObject(mReader));
+        } catch (IOException | JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            mReader.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    private static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                return reader.nextString();
+        }
+    }
+
+    // Longs are kept as longs, since going through a double would lose precision past 2^53
+    private static Object parseNumber(String number) {
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return Double.parseDouble(number);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import static com.xlythe.dao.Transcriber.inflate;
+import static com.xlythe.dao.Util.newInstance;
+
+/**
+ * A read-only list backed by a cursor. Rows are only inflated once they're asked for with
+ * {@link #get(int)}, and the most recently used instances are kept around so that asking for them
+ * again is free.
+ *
+ * Holds the database open until it's closed.
+ */
+public class LazyList<T extends BaseModel<T>> extends AbstractList<T> implements RandomAccess, Closeable {
+    private static final int DEFAULT_WINDOW_SIZE = 50;
+
+    private final Cursor mCursor;
+    private final ModelInfo<T> mInfo;
+    private final Context mContext;
+    private final int[] mIndices;
+    private final int mSize;
+    private final Map<Integer, T> mWindow;
+    private boolean mClosed;
+
+    LazyList(Cursor cursor, ModelInfo<T> info, Context context) {
+        this(cursor, info, context, DEFAULT_WINDOW_SIZE);
+    }
+
+    LazyList(Cursor cursor, ModelInfo<T> info, Context context, final int windowSize) {
+        mCursor = cursor;
+        mInfo = info;
+        mContext = context;
+        mIndices = info.getColumnIndices(cursor);
+        mSize = cursor.getCount();
+        mWindow = new LinkedHashMap<Integer, T>(16, 0.75f, /*accessOrder=*/true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > windowSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized T get(int location) {
+        if (location < 0 || location >= mSize) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + mSize);
+        }
+        T instance = mWindow.get(location);
+        if (instance != null) {
+            return instance;
+        }
+        if (mClosed) {
+            throw new IllegalStateException("LazyList has already been closed");
+        }
+
+        mCursor.moveToPosition(location);
+        instance = newInstance(mInfo.getModelClass(), mContext);
+        inflate(instance, mCursor, mIndices);
+        mWindow.put(location, instance);
+        return instance;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    public synchronized boolean isClosed() {
+        return mClosed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mWindow.clear();
+        mCursor.close();
+    }
+}
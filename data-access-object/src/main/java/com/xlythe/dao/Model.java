@@ -2,16 +2,22 @@ package com.xlythe.dao;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.util.Log;
 
+import java.lang.reflect.Field;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import static com.xlythe.dao.Util.isBoolean;
+import static com.xlythe.dao.Util.isFloat;
+import static com.xlythe.dao.Util.isInt;
+import static com.xlythe.dao.Util.isLong;
 import static com.xlythe.dao.Util.newInstance;
 
 /**
@@ -22,24 +28,32 @@ import static com.xlythe.dao.Util.newInstance;
 public abstract class Model<T extends Model<T>> extends BaseModel<T> {
     static final String TAG = Model.class.getSimpleName();
 
-    private static final Map<Class<? extends Model<?>>, Set<Observer>> OBSERVERS = new HashMap<>();
-
     public static void registerObserver(Class<? extends Model<?>> clazz, Observer observer) {
         if (DEBUG) Log.d(TAG, "Registering observer for " + clazz);
-        Set<Observer> set = OBSERVERS.get(clazz);
-        if (set == null) {
-            set = new HashSet<>();
-            OBSERVERS.put(clazz, set);
-        }
-        set.add(observer);
+        ObserverRegistry.register(clazz, observer);
     }
 
     public static void unregisterObserver(Class<? extends Model<?>> clazz, Observer observer) {
         if (DEBUG) Log.d(TAG, "Unregistering observer for " + clazz);
-        Set<Observer> set = OBSERVERS.get(clazz);
-        if (set != null) {
-            set.remove(observer);
-        }
+        ObserverRegistry.unregister(clazz, observer);
+    }
+
+    /**
+     * Sets the executor that observers are called on (eg. the main thread's Handler::post). By
+     * default, they're called on the thread that made the change, or on a background thread when
+     * changes are being coalesced.
+     */
+    public static void setObserverExecutor(Executor executor) {
+        ObserverRegistry.setExecutor(executor);
+    }
+
+    /**
+     * Coalesces the changes made to a model within the window into a single callback, delivered
+     * once the window has passed since the first change. A window of 0, the default, calls
+     * observers once for every change.
+     */
+    public static void setObserverCoalescingWindow(long window, TimeUnit unit) {
+        ObserverRegistry.setCoalescingWindow(window, unit);
     }
 
     public Model(Context context) {
@@ -59,33 +73,58 @@ public abstract class Model<T extends Model<T>> extends BaseModel<T> {
     void create() {
         open();
         getDataSource().create(getModel());
-        notifyDataSetChanged();
+        notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.INSERT, this));
         close();
     }
 
     protected void save() {
         open();
         getDataSource().save(getModel());
-        notifyDataSetChanged();
+        notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.SAVE, this));
         close();
     }
 
     protected void delete() {
         open();
         getDataSource().delete(getModel());
-        notifyDataSetChanged();
+        notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.DELETE, this));
         close();
     }
 
-    private void notifyDataSetChanged() {
-        if (DEBUG) Log.d(TAG, "Notifying observers for " + getModelClass());
-        if (OBSERVERS.containsKey(getModelClass())) {
-            for (Observer observer : OBSERVERS.get(getModelClass())) {
-                observer.onChange();
-            }
-        } else {
-            if (DEBUG) Log.d(TAG, "No observers found");
+    /**
+     * Saves every model in a single transaction, and then notifies observers once. Unlike calling
+     * {@link #save()} in a loop, overrides of save() are not called.
+     */
+    protected static <T extends Model<T>> void saveAll(Collection<T> models) {
+        if (models.isEmpty()) {
+            return;
+        }
+        T model = models.iterator().next();
+        new Query<>(model.getModelClass(), model.getContext()).saveAll(models);
+    }
+
+    /**
+     * Deletes every model in a single transaction, and then notifies observers once. Unlike calling
+     * {@link #delete()} in a loop, overrides of delete() are not called.
+     */
+    protected static <T extends Model<T>> void deleteAll(Collection<T> models) {
+        if (models.isEmpty()) {
+            return;
         }
+        T model = models.iterator().next();
+        new Query<>(model.getModelClass(), model.getContext()).deleteAll(models);
+    }
+
+    /**
+     * Notifies observers that rows changed, without saying which
+     */
+    static void notifyDataSetChanged(Class<?> clazz) {
+        notifyDataSetChanged(clazz, ChangeSet.unknown());
+    }
+
+    static void notifyDataSetChanged(Class<?> clazz, ChangeSet changes) {
+        QueryCache.invalidate(clazz);
+        ObserverRegistry.notify(clazz, changes);
     }
 
     public static class Query<Q extends Model<Q>> {
@@ -93,6 +132,15 @@ public abstract class Model<T extends Model<T>> extends BaseModel<T> {
         private final Context mContext;
         private final ArrayList<Param> mParams = new ArrayList<>();
         private String mOrderBy = null;
+        private String[] mColumns = null;
+
+        // Set by seek(), after() and before(), for keyset pagination
+        private String mSeekColumn = null;
+        private boolean mSeekDescending = false;
+        private Page.Token mSeekToken = null;
+        private Param mSeekParam = null;
+        private int mChunkSize = 0;
+        private boolean mCached = false;
 
         public Query(Class<Q> clazz, Context context) {
             mClass = clazz;
@@ -114,62 +162,455 @@ public abstract class Model<T extends Model<T>> extends BaseModel<T> {
             return this;
         }
 
+        /**
+         * Orders the rows by the column, with ties broken by _id, so that they can be read a page at
+         * a time with {@link #page(int)}. The column shouldn't contain nulls.
+         */
+        public Query<Q> seek(String column) {
+            return seek(column, /*descending=*/false);
+        }
+
+        public Query<Q> seek(String column, boolean descending) {
+            checkColumn(column);
+            ModelInfo<Q> info = ModelInfo.get(mClass);
+            mSeekColumn = column;
+            mSeekDescending = descending;
+
+            String direction = descending ? " DESC" : " ASC";
+            String idColumn = info.getIdColumn();
+            String orderColumn = _ID.equals(column) ? idColumn : column;
+            mOrderBy = orderColumn.equals(idColumn) ? idColumn + direction : orderColumn + direction + ", " + idColumn + direction;
+            return this;
+        }
+
+        /**
+         * Only matches rows that come after the given row, ordered by the column (ascending) and then
+         * by _id. Unlike an offset, this skips straight to the row using the column's index.
+         */
+        public Query<Q> after(String column, Object value, long id) {
+            return after(new Page.Token(column, value, id, /*descending=*/false));
+        }
+
+        /**
+         * Only matches rows that come before the given row, ordered by the column (descending) and
+         * then by _id.
+         */
+        public Query<Q> before(String column, Object value, long id) {
+            return after(new Page.Token(column, value, id, /*descending=*/true));
+        }
+
+        /**
+         * Continues from the page that the token came from. See {@link Page#getNextToken()}.
+         */
+        public Query<Q> after(Page.Token token) {
+            seek(token.getColumn(), token.isDescending());
+            mSeekToken = token;
+
+            // column > value OR (column = value AND _id > id). The redundant column >= value lets
+            // SQLite start from the value in the column's index.
+            String idColumn = ModelInfo.get(mClass).getIdColumn();
+            String column = _ID.equals(token.getColumn()) ? idColumn : token.getColumn();
+            Object value = token.getValue();
+            boolean descending = token.isDescending();
+            Param pastId = descending ? Param.lessThan(idColumn, token.getId()) : Param.greaterThan(idColumn, token.getId());
+            if (column.equals(idColumn)) {
+                mSeekParam = pastId;
+            } else {
+                mSeekParam = Param.and(
+                        descending ? Param.lessThanOrEqualTo(column, value) : Param.greaterThanOrEqualTo(column, value),
+                        Param.or(descending ? Param.lessThan(column, value) : Param.greaterThan(column, value), pastId));
+            }
+            mParams.add(mSeekParam);
+            return this;
+        }
+
+        /**
+         * Only reads the given columns when inflating models. Fields for the other columns are left
+         * at their defaults, so saving a model read this way overwrites those columns. _id is
+         * always read.
+         */
+        public Query<Q> select(String... columns) {
+            List<String> selection = new ArrayList<>(columns.length + 1);
+            for (String column : columns) {
+                checkColumn(column);
+                if (!selection.contains(column)) {
+                    selection.add(column);
+                }
+            }
+            if (!selection.contains(_ID)) {
+                selection.add(_ID);
+            }
+            mColumns = selection.toArray(new String[0]);
+            return this;
+        }
+
+        /**
+         * Sets how many rows the bulk operations (eg. {@link #saveAll(Collection)}) write per
+         * transaction. Smaller chunks let other threads access the database in between. By default,
+         * all rows are written in a single transaction.
+         */
+        public Query<Q> chunkSize(int chunkSize) {
+            if (chunkSize < 0) {
+                throw new IllegalArgumentException("Chunk size must be non-negative");
+            }
+            mChunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Serves count(), all(), limit() and first() from the {@link QueryCache}, so that running
+         * this query again skips SQLite until the table is written to. Every hit returns its own
+         * copies of the rows. Models annotated with {@link Database#cacheQueries()} always do this.
+         */
+        public Query<Q> cached() {
+            mCached = true;
+            return this;
+        }
+
         public long count() {
-            Q model = newInstance(getModelClass(), getContext());
+            return load("count", null, dataSource -> dataSource.count(getParams()));
+        }
+
+        /**
+         * Returns true if any row matches. Faster than count() > 0, since it stops at the first match.
+         */
+        public boolean exists() {
+            ModelDataSource<Q> dataSource = open();
             try {
-                model.open();
-                return model.getDataSource().count(getParams());
+                return dataSource.exists(getParams());
             } finally {
-                model.close();
+                dataSource.close();
             }
         }
 
         public List<Q> all() {
-            Q model = newInstance(getModelClass(), getContext());
+            return query(null);
+        }
+
+        public List<Q> limit(int limit) {
+            return query(Integer.toString(limit));
+        }
+
+        public List<Q> limit(int limit, int offset) {
+            return query(offset + "," + limit);
+        }
+
+        private List<Q> query(final String limit) {
+            return load("query", limit, dataSource -> dataSource.query(mColumns, mOrderBy, limit, getParams()));
+        }
+
+        private interface Loader<M extends Model<M>, R> {
+            R load(ModelDataSource<M> dataSource);
+        }
+
+        /**
+         * Runs the loader against the database, or returns its cached result if this query is cached
+         */
+        private <R> R load(String operation, String limit, Loader<Q, R> loader) {
+            String key = null;
+            long generation = 0;
+            if (mCached || ModelInfo.get(mClass).cacheQueries()) {
+                key = QueryCache.createKey(mClass, operation, mColumns, mOrderBy, limit, getParams());
+                QueryCache.Entry entry = QueryCache.get(key);
+                if (entry != null) {
+                    return entry.getValue(mContext);
+                }
+                generation = QueryCache.getGeneration(mClass);
+            }
+
+            R result;
+            ModelDataSource<Q> dataSource = open();
             try {
-                model.open();
-                return model.getDataSource().query(mOrderBy, getParams());
+                result = loader.load(dataSource);
             } finally {
-                model.close();
+                dataSource.close();
+            }
+            if (key != null) {
+                QueryCache.put(mContext, mClass, key, result, generation);
             }
+            return result;
         }
 
-        public List<Q> limit(int limit) {
-            Q model = newInstance(getModelClass(), getContext());
+        /**
+         * Returns a cursor over the matching rows. The database stays open until the cursor is closed.
+         */
+        public Cursor cursor() {
+            ModelDataSource<Q> dataSource = open();
+            return new ReleasingCursor(dataSource.cursor(mColumns, mOrderBy, null, getParams()), dataSource);
+        }
+
+        /**
+         * Returns the sum of the column over the matching rows, or 0 if there are none
+         */
+        public double sum(String column) {
+            checkNumericColumn(column);
+            return Double.parseDouble(aggregate("TOTAL(" + getSqlColumn(column) + ")"));
+        }
+
+        /**
+         * Returns the smallest value of the column among the matching rows, or NaN if there are none
+         */
+        public double min(String column) {
+            checkNumericColumn(column);
+            return toDouble(aggregate("MIN(" + getSqlColumn(column) + ")"));
+        }
+
+        /**
+         * Returns the largest value of the column among the matching rows, or NaN if there are none
+         */
+        public double max(String column) {
+            checkNumericColumn(column);
+            return toDouble(aggregate("MAX(" + getSqlColumn(column) + ")"));
+        }
+
+        /**
+         * Returns the average value of the column over the matching rows, or NaN if there are none
+         */
+        public double avg(String column) {
+            checkNumericColumn(column);
+            return toDouble(aggregate("AVG(" + getSqlColumn(column) + ")"));
+        }
+
+        private String aggregate(String function) {
+            ModelDataSource<Q> dataSource = open();
             try {
-                model.open();
-                return model.getDataSource().query(mOrderBy, limit, getParams());
+                return dataSource.aggregate(function, getParams());
             } finally {
-                model.close();
+                dataSource.close();
             }
         }
 
-        public List<Q> limit(int limit, int offset) {
-            Q model = newInstance(getModelClass(), getContext());
+        private static double toDouble(String value) {
+            return value == null ? Double.NaN : Double.parseDouble(value);
+        }
+
+        /**
+         * Returns each distinct value of the column among the matching rows
+         */
+        public String[] distinct(String column) {
+            checkColumn(column);
+            ModelDataSource<Q> dataSource = open();
             try {
-                model.open();
-                return model.getDataSource().query(mOrderBy, limit, offset, getParams());
+                return dataSource.distinct(column, mOrderBy, getParams());
             } finally {
-                model.close();
+                dataSource.close();
             }
         }
 
-        public Cursor cursor() {
-            Q model = newInstance(getModelClass(), getContext());
-            model.open();
-            return model.getDataSource().cursor(mOrderBy, getParams());
+        /**
+         * Groups the matching rows by the column's value, eg. groupBy("folder").count()
+         */
+        public GroupBy<Q> groupBy(String column) {
+            checkColumn(column);
+            return new GroupBy<>(this, column);
         }
 
-        public Q first() {
-            Q model = newInstance(getModelClass(), getContext());
+        /**
+         * Throws if the column isn't one of the model's, so that typos fail early and SQL can't be
+         * passed in where a column name is expected
+         */
+        void checkColumn(String column) {
+            getField(column);
+        }
+
+        /**
+         * Throws if the column isn't one of the model's int, long, float or boolean columns. Sums,
+         * averages and the like are read back as numbers, so other columns can't be aggregated.
+         */
+        void checkNumericColumn(String column) {
+            Field field = getField(column);
+            if (!isInt(field) && !isLong(field) && !isFloat(field) && !isBoolean(field)) {
+                throw new IllegalArgumentException("Column " + column + " isn't numeric");
+            }
+        }
+
+        private Field getField(String column) {
+            try {
+                return ModelInfo.get(mClass).getField(column);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("Unknown column " + column, e);
+            }
+        }
+
+        /**
+         * Returns the column to use in SQL expressions, since _id may be stored in the unique column
+         */
+        String getSqlColumn(String column) {
+            return BaseModel._ID.equals(column) ? ModelInfo.get(mClass).getIdColumn() : column;
+        }
+
+        /**
+         * Returns the column's value for every matching row, without creating any models
+         */
+        public long[] longColumn(String column) {
+            checkColumn(column);
+            ModelDataSource<Q> dataSource = open();
+            try {
+                return dataSource.queryLongs(column, mOrderBy, getParams());
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        public int[] intColumn(String column) {
+            checkColumn(column);
+            ModelDataSource<Q> dataSource = open();
             try {
-                model.open();
-                return model.getDataSource().first(mOrderBy, getParams());
+                return dataSource.queryInts(column, mOrderBy, getParams());
             } finally {
-                model.close();
+                dataSource.close();
             }
         }
 
+        public float[] floatColumn(String column) {
+            checkColumn(column);
+            ModelDataSource<Q> dataSource = open();
+            try {
+                return dataSource.queryFloats(column, mOrderBy, getParams());
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        public String[] stringColumn(String column) {
+            checkColumn(column);
+            ModelDataSource<Q> dataSource = open();
+            try {
+                return dataSource.queryStrings(column, mOrderBy, getParams());
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        /**
+         * Returns the matching rows as a list that only inflates rows when they're read. The
+         * database stays open until the list is closed.
+         */
+        public LazyList<Q> lazy() {
+            return lazy(null);
+        }
+
+        public LazyList<Q> lazy(int limit) {
+            return lazy(Integer.toString(limit));
+        }
+
+        public LazyList<Q> lazy(int limit, int offset) {
+            return lazy(offset + "," + limit);
+        }
+
+        private LazyList<Q> lazy(String limit) {
+            ModelDataSource<Q> dataSource = open();
+            Cursor cursor;
+            try {
+                cursor = dataSource.cursor(mColumns, mOrderBy, limit, getParams());
+            } catch (RuntimeException e) {
+                dataSource.close();
+                throw e;
+            }
+            return new LazyList<>(new ReleasingCursor(cursor, dataSource), dataSource.getModelInfo(), getContext());
+        }
+
+        /**
+         * Reads the matching rows in order, one at a time, into a single reused instance. The
+         * database stays open until the iterator is closed, or until every row has been read.
+         */
+        public ModelIterator<Q> scan() {
+            ModelDataSource<Q> dataSource = open();
+            Cursor cursor;
+            try {
+                cursor = dataSource.cursor(mColumns, mOrderBy, null, getParams());
+            } catch (RuntimeException e) {
+                dataSource.close();
+                throw e;
+            }
+            return new ModelIterator<>(new ReleasingCursor(cursor, dataSource), newInstance(getModelClass(), getContext()));
+        }
+
+        /**
+         * Visits every matching row without allocating a model per row. The instance passed to the
+         * visitor is reused for the next row, so copy out anything that needs to be kept.
+         */
+        public void forEach(Visitor<Q> visitor) {
+            try (ModelIterator<Q> iterator = scan()) {
+                while (iterator.hasNext()) {
+                    visitor.visit(iterator.next());
+                }
+            }
+        }
+
+        /**
+         * Returns the next size rows, in the order set by {@link #seek(String)}, {@link #after(Page.Token)}
+         * or their variants. Every page costs the same, no matter how deep it is.
+         */
+        public Page<Q> page(int size) {
+            if (mSeekColumn == null) {
+                throw new IllegalStateException("Call seek(), after() or before() before page()");
+            }
+
+            // The ordered column is needed for the next page's token
+            String[] columns = mColumns;
+            if (columns != null && !Arrays.asList(columns).contains(mSeekColumn)) {
+                columns = Arrays.copyOf(columns, columns.length + 1);
+                columns[columns.length - 1] = mSeekColumn;
+            }
+
+            ModelDataSource<Q> dataSource = open();
+            try {
+                return newPage(dataSource.query(columns, mOrderBy, Integer.toString(size), getParams()), size);
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        Page<Q> newPage(List<Q> items, int size) {
+            return Page.create(items, size, mSeekColumn, mSeekDescending);
+        }
+
+        /**
+         * Returns the column set by seek(), after() or before(), or null if there isn't one
+         */
+        String getSeekColumn() {
+            return mSeekColumn;
+        }
+
+        boolean isSeekDescending() {
+            return mSeekDescending;
+        }
+
+        /**
+         * Returns the row set by after() or before(), or null if paging starts from the first row
+         */
+        Page.Token getSeekToken() {
+            return mSeekToken;
+        }
+
+        /**
+         * Returns the param that after() or before() added to skip to the token's row, or null
+         */
+        Param getSeekParam() {
+            return mSeekParam;
+        }
+
+        public Q first() {
+            return load("first", "1", dataSource -> dataSource.first(mColumns, mOrderBy, getParams()));
+        }
+
+        /**
+         * Compiles the query so that it can be run repeatedly with new arguments. Arguments are bound
+         * in the order that where() was called. The returned query must be closed.
+         */
+        public CompiledQuery<Q> compile() {
+            Param[] params = getParams();
+            if (QueryChunks.split(0, params).size() > 1) {
+                throw new IllegalArgumentException("Compiled queries can't bind more than " + Param.MAX_BOUND_ARGUMENTS + " arguments");
+            }
+            return new CompiledQuery<>(open(), params, mOrderBy);
+        }
+
+        /**
+         * Inserts a new row with the values from where(). If a row already shares its @Unique
+         * values, that row is replaced and the new row is given a new _id.
+         */
         public Q insert() {
             Q instance = newInstance(getModelClass(), getContext());
             instance = Transcriber.inflate(instance, getParams());
@@ -177,20 +618,129 @@ public abstract class Model<T extends Model<T>> extends BaseModel<T> {
             return instance;
         }
 
+        /**
+         * Deletes every matching row in a single statement, and then notifies observers once.
+         * Overrides of delete() are not called.
+         */
         public void delete() {
-            Q model = newInstance(getModelClass(), getContext());
+            int rowsDeleted;
+            ModelDataSource<Q> dataSource = open();
             try {
-                model.open();
-                model.getDataSource().delete(getParams());
+                rowsDeleted = dataSource.delete(getParams());
             } finally {
-                model.close();
+                dataSource.close();
             }
+            if (rowsDeleted > 0) {
+                notifyDataSetChanged(getModelClass());
+            }
+        }
+
+        /**
+         * Sets the column to the value for every matching row in a single statement, and then
+         * notifies observers once. Overrides of save() are not called.
+         *
+         * @return The number of rows that were updated.
+         */
+        public int update(String column, Object value) {
+            return update(new Param(column, value));
+        }
+
+        /**
+         * Sets each param's column to its value for every matching row in a single statement, and
+         * then notifies observers once. Overrides of save() are not called.
+         *
+         * @return The number of rows that were updated.
+         */
+        public int update(Param... values) {
+            for (Param value : values) {
+                if (!value.isEquality()) {
+                    throw new IllegalArgumentException("Updates must set a column to a value, but got " + value);
+                }
+                checkColumn(value.getKey());
+            }
+            if (values.length == 0) {
+                return 0;
+            }
+
+            int rowsUpdated;
+            ModelDataSource<Q> dataSource = open();
+            try {
+                rowsUpdated = dataSource.update(values, getParams());
+            } finally {
+                dataSource.close();
+            }
+            if (rowsUpdated > 0) {
+                notifyDataSetChanged(getModelClass());
+            }
+            return rowsUpdated;
+        }
+
+        /**
+         * Inserts every model as a new row, and then notifies observers once.
+         */
+        public void insertAll(Collection<Q> models) {
+            if (models.isEmpty()) {
+                return;
+            }
+            ModelDataSource<Q> dataSource = open();
+            try {
+                dataSource.createAll(models, mChunkSize);
+            } finally {
+                dataSource.close();
+            }
+            notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.INSERT, models));
+        }
+
+        /**
+         * Saves every model, updating any that already exist, and then notifies observers once.
+         */
+        public void saveAll(Collection<Q> models) {
+            if (models.isEmpty()) {
+                return;
+            }
+            ModelDataSource<Q> dataSource = open();
+            try {
+                dataSource.saveAll(models, mChunkSize);
+            } finally {
+                dataSource.close();
+            }
+            notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.SAVE, models));
+        }
+
+        /**
+         * Deletes every model, and then notifies observers once.
+         */
+        public void deleteAll(Collection<Q> models) {
+            if (models.isEmpty()) {
+                return;
+            }
+            ModelDataSource<Q> dataSource = open();
+            try {
+                dataSource.deleteAll(models, mChunkSize);
+            } finally {
+                dataSource.close();
+            }
+            notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.DELETE, models));
         }
 
         protected final Context getContext() {
             return mContext;
         }
 
+        protected final ModelDataSource<Q> getDataSource() {
+            return ModelDataSource.get(getContext(), getModelClass());
+        }
+
+        ModelDataSource<Q> open() {
+            ModelDataSource<Q> dataSource = getDataSource();
+            try {
+                dataSource.open();
+            } catch (SQLException e) {
+                Log.e(TAG, "Failed to open database", e);
+            }
+            return dataSource;
+        }
+
         protected Param[] getParams() {
             return mParams.toArray(new Param[0]);
         }
@@ -206,5 +756,39 @@ public abstract class Model<T extends Model<T>> extends BaseModel<T> {
 
     public interface Observer {
         void onChange();
+
+        /**
+         * Called with what changed. By default, this calls {@link #onChange()}. Override it to
+         * update incrementally, rather than reloading everything.
+         */
+        default void onChange(ChangeSet changes) {
+            onChange();
+        }
+    }
+
+    public interface Visitor<T> {
+        void visit(T instance);
+    }
+
+    /**
+     * A cursor that hands its database connection back once it's closed.
+     */
+    private static class ReleasingCursor extends CursorWrapper {
+        private final ModelDataSource<?> mDataSource;
+        private boolean mReleased;
+
+        ReleasingCursor(Cursor cursor, ModelDataSource<?> dataSource) {
+            super(cursor);
+            mDataSource = dataSource;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (!mReleased) {
+                mReleased = true;
+                mDataSource.close();
+            }
+        }
     }
 }
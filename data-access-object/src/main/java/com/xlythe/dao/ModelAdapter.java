@@ -0,0 +1,60 @@
+package com.xlythe.dao;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads and writes the persisted fields of a model without going through reflection.
+ *
+ * Implementations are generated at compile time by the data-access-object-compiler annotation
+ * processor, one per model, and are named after the model with an {@code _ModelAdapter} suffix.
+ * If no adapter was generated for a model, {@link Transcriber} falls back to reflection.
+ */
+public abstract class ModelAdapter<T extends BaseModel<T>> {
+    static final String SUFFIX = "_ModelAdapter";
+
+    /**
+     * Returns the columns that {@link #inflate(BaseModel, Cursor, int[])} reads, with _id last
+     */
+    public abstract String[] getColumnNames();
+
+    /**
+     * Updates the values of the instance with the cursor's current position. indices[i] is the
+     * cursor's index for the column getColumnNames()[i], so that they're only looked up once per cursor.
+     * Columns that weren't selected have an index of -1, and must be skipped.
+     */
+    public abstract void inflate(T instance, Cursor cursor, int[] indices);
+
+    /**
+     * Updates the values of the instance with the JSONObject's values
+     */
+    public abstract void inflate(T instance, JSONObject object) throws JSONException;
+
+    /**
+     * Writes the values of the instance into the ContentValues
+     */
+    public abstract void getContentValues(T instance, ContentValues values);
+
+    /**
+     * Writes the values of the instance into the JSONObject
+     */
+    public abstract void getJSONObject(T instance, JSONObject object) throws JSONException;
+
+    protected static long get_Id(BaseModel<?> instance) {
+        return instance._id;
+    }
+
+    protected static void set_Id(BaseModel<?> instance, long id) {
+        instance._id = id;
+    }
+
+    static String getAdapterName(Class<?> clazz) {
+        String name = clazz.getName();
+        int index = name.lastIndexOf('.');
+        String packageName = index == -1 ? "" : name.substring(0, index + 1);
+        return packageName + name.substring(index + 1).replace('$', '_') + SUFFIX;
+    }
+}
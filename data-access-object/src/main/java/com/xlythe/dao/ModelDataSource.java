@@ -0,0 +1,1211 @@
+package com.xlythe.dao;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.xlythe.dao.BaseModel.DEBUG;
+import static com.xlythe.dao.BaseModel._ID;
+import static com.xlythe.dao.Transcriber.getContentValues;
+import static com.xlythe.dao.Transcriber.inflate;
+import static com.xlythe.dao.Util.newInstance;
+
+/**
+ * Reads and writes the rows of a single model's table. There's one data source per model class,
+ * shared by every instance of that model, so inflated models don't need to carry one around.
+ */
+public class ModelDataSource<T extends BaseModel<T>> {
+    private static final String TAG = ModelDataSource.class.getSimpleName();
+
+    static <T extends BaseModel<T>> ModelDataSource<T> get(Context context, Class<T> clazz) {
+        ModelInfo<T> info = ModelInfo.get(clazz);
+        if (info.getCache() != null) {
+            EntityCache.registerComponentCallbacks(context);
+        }
+        return ConnectionManager.getHelper(context, info).getDataSource(info);
+    }
+
+    // Database fields
+    private SQLiteDatabase database;
+    private final ModelHelper dbHelper;
+    private final ModelInfo<T> info;
+
+    // These are the column names (eg. _id)
+    private final String[] columns;
+
+    // Built lazily, since they never change
+    private String insertStatement;
+    private String upsertStatement;
+
+    ModelDataSource(ModelHelper dbHelper, ModelInfo<T> info) {
+        this.dbHelper = dbHelper;
+        this.info = info;
+        this.columns = info.getColumns();
+    }
+
+    public void open() throws SQLException {
+        try {
+            database = dbHelper.acquire();
+            dbHelper.ensureTable(database, info);
+        } catch (SQLiteException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    public void close() {
+        dbHelper.release();
+    }
+
+    private Param[] getUniqueParams(T instance) {
+        ArrayList<Param> params = new ArrayList<>();
+        Field[] uniqueFields = info.getUniqueFields();
+        try {
+            for (int i = 0; i < uniqueFields.length; i++) {
+                Object value = uniqueFields[i].get(instance);
+                if (value != null) {
+                    params.add(new Param(info.getUniqueColumns()[i], value));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Failed to read field", e);
+        }
+
+        // If no unique values were set, use the _id value instead.
+        if (params.isEmpty()) {
+            return new Param[] { new Param(_ID, instance._id) };
+        }
+
+        // Otherwise, ignore _id and use their unique values
+        return params.toArray(new Param[0]);
+    }
+
+    private String printQueryStatementForDebugging(Param... params) {
+        StringBuilder query = new StringBuilder();
+        for (Param param : params) {
+            if (query.length() > 0) {
+                query.append(" AND ");
+            }
+            query.append(param);
+        }
+        return query.toString();
+    }
+
+    String createParameterizedQuery(Param... params) {
+        StringBuilder query = new StringBuilder();
+        for (Param param : params) {
+            if (query.length() > 0) {
+                query.append(" AND ");
+            }
+            param.appendSql(query);
+        }
+        return query.toString();
+    }
+
+    /**
+     * Returns the params that are bound to the ?s of {@link #createParameterizedQuery(Param...)}
+     */
+    static Param[] getArguments(Param... params) {
+        List<Param> arguments = new ArrayList<>(params.length);
+        for (Param param : params) {
+            param.collectArguments(arguments);
+        }
+        return arguments.toArray(new Param[0]);
+    }
+
+    String createSelectStatement(String query, String orderBy, String limit) {
+        return createSelectStatement(info.getSelectColumns(), query, orderBy, limit);
+    }
+
+    String createSelectStatement(String[] columns, String query, String orderBy, String limit) {
+        StringBuilder builder = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(columns[i]);
+        }
+        builder.append(" FROM ").append(getTableName());
+        appendClauses(builder, query, orderBy, limit);
+        return builder.toString();
+    }
+
+    String createCountStatement(String query) {
+        StringBuilder builder = new StringBuilder("SELECT COUNT(*) FROM ").append(getTableName());
+        appendClauses(builder, query, null, null);
+        return builder.toString();
+    }
+
+    String createExistsStatement(String query) {
+        StringBuilder builder = new StringBuilder("SELECT EXISTS(SELECT 1 FROM ").append(getTableName());
+        appendClauses(builder, query, null, null);
+        return builder.append(")").toString();
+    }
+
+    String createDeleteStatement(String query) {
+        StringBuilder builder = new StringBuilder("DELETE FROM ").append(getTableName());
+        appendClauses(builder, query, null, null);
+        return builder.toString();
+    }
+
+    private String createInsertStatement() {
+        return createInsertStatement("INSERT OR REPLACE INTO ");
+    }
+
+    // _id is assigned by SQLite, except in WITHOUT ROWID tables where it's bound last. See executeInsert().
+    private String createInsertStatement(String verb) {
+        StringBuilder builder = new StringBuilder(verb).append(getTableName()).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (String column : columns) {
+            if (_ID.equals(column)) {
+                continue;
+            }
+            if (values.length() > 0) {
+                builder.append(", ");
+                values.append(", ");
+            }
+            builder.append(column);
+            values.append("?");
+        }
+        if (info.getLayout() == Database.Layout.WITHOUT_ROWID) {
+            builder.append(", ").append(_ID);
+            values.append(", ?");
+        }
+        return builder.append(") VALUES (").append(values).append(")").toString();
+    }
+
+    /**
+     * Inserts a row, or updates the row with the same unique values. Requires a unique index over
+     * the unique columns, and SQLite 3.24+. See {@link ModelHelper#supportsUpsert(ModelInfo)}.
+     */
+    private String createUpsertStatement() {
+        String[] uniqueColumns = info.getUniqueColumns();
+        StringBuilder builder = new StringBuilder(createInsertStatement("INSERT INTO "));
+        builder.append(" ON CONFLICT(");
+        for (int i = 0; i < uniqueColumns.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(uniqueColumns[i]);
+        }
+        builder.append(") DO ");
+
+        StringBuilder updates = new StringBuilder();
+        for (String column : columns) {
+            if (_ID.equals(column) || Arrays.asList(uniqueColumns).contains(column)) {
+                continue;
+            }
+            if (updates.length() > 0) {
+                updates.append(", ");
+            }
+            updates.append(column).append(" = excluded.").append(column);
+        }
+        if (updates.length() == 0) {
+            return builder.append("NOTHING").toString();
+        }
+        return builder.append("UPDATE SET ").append(updates).toString();
+    }
+
+    // _id is left alone, so that rows keep their id when they're updated
+    private String createUpdateStatement(String query) {
+        StringBuilder builder = new StringBuilder("UPDATE OR REPLACE ").append(getTableName()).append(" SET ");
+        boolean first = true;
+        for (String column : columns) {
+            if (_ID.equals(column)) {
+                continue;
+            }
+            if (!first) {
+                builder.append(", ");
+            }
+            builder.append(column).append(" = ?");
+            first = false;
+        }
+        appendClauses(builder, query, null, null);
+        return builder.toString();
+    }
+
+    private static void appendClauses(StringBuilder builder, String query, String orderBy, String limit) {
+        if (query != null && !query.isEmpty()) {
+            builder.append(" WHERE ").append(query);
+        }
+        if (orderBy != null && !orderBy.isEmpty()) {
+            builder.append(" ORDER BY ").append(orderBy);
+        }
+        if (limit != null) {
+            builder.append(" LIMIT ").append(limit);
+        }
+    }
+
+    SQLiteStatement compileStatement(String sql) {
+        return database.compileStatement(sql);
+    }
+
+    SQLiteStatement acquireStatement(String sql) {
+        return dbHelper.getStatementCache().acquire(database, sql);
+    }
+
+    void releaseStatement(String sql, SQLiteStatement statement) {
+        dbHelper.getStatementCache().release(sql, statement);
+    }
+
+    /**
+     * Binds the values of the params to the statement, starting at the given (1-based) index
+     */
+    static int bind(SQLiteProgram program, int index, Param... params) {
+        for (Param param : getArguments(params)) {
+            bind(program, index++, param.getUnformattedValue());
+        }
+        return index;
+    }
+
+    // byte[]s are bound as blobs, so that they compare equal to the blobs we store
+    static void bind(SQLiteProgram program, int index, Object value) {
+        if (value == null) {
+            program.bindNull(index);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Float || value instanceof Double) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            program.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+
+    private int bind(SQLiteProgram program, ContentValues values, boolean includeId) {
+        int index = 1;
+        for (String column : columns) {
+            if (!includeId && _ID.equals(column)) {
+                continue;
+            }
+            bind(program, index++, values.get(column));
+        }
+        return index;
+    }
+
+    /**
+     * Runs a SELECT with the params bound by type. Unlike {@link SQLiteDatabase#rawQuery(String, String[])},
+     * which binds every argument as a string, byte[]s are bound as blobs.
+     */
+    private Cursor rawCursor(String sql, final Param... params) {
+        return database.rawQueryWithFactory((db, driver, editTable, query) -> {
+            bind(query, 1, params);
+            return new SQLiteCursor(driver, editTable, query);
+        }, sql, null, null);
+    }
+
+    public String getDbName() {
+        return info.getDatabaseName();
+    }
+
+    public String getTableName() {
+        return info.getTableName();
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public Cursor getRows() {
+        return database.query(getTableName(), info.getSelectColumns(), null, null, null, null, null);
+    }
+
+    public void create(T instance) {
+        ContentValues values = getContentValues(instance);
+        if (DEBUG) Log.d(TAG, "Creating new entry values{" + values + "}");
+        String sql = getInsertStatement();
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            instance._id = executeInsert(statement, values);
+        } finally {
+            releaseStatement(sql, statement);
+        }
+        invalidate(instance);
+        mirrorWrite(instance);
+    }
+
+    /**
+     * Binds the values to a statement from {@link #createInsertStatement(String)} and runs it.
+     *
+     * @return The _id of the inserted row. For upserts, this is only meaningful if a row was inserted.
+     */
+    private long executeInsert(final SQLiteStatement statement, ContentValues values) {
+        final int index = bind(statement, values, /*includeId=*/false);
+        if (info.getLayout() != Database.Layout.WITHOUT_ROWID) {
+            return statement.executeInsert();
+        }
+
+        // There's no rowid to hand out ids, so we pick the next one ourselves
+        final long[] id = new long[1];
+        runInTransaction(() -> {
+            id[0] = nextId();
+            statement.bindLong(index, id[0]);
+            statement.executeInsert();
+        });
+        return id[0];
+    }
+
+    // Returns the _id of the row that matches the params
+    private long queryId(Param... params) {
+        String sql = createSelectStatement(new String[] { info.getSelectColumn(_ID) }, createParameterizedQuery(params), null, "1");
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            bind(statement, 1, params);
+            return statement.simpleQueryForLong();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    private long nextId() {
+        String sql = "SELECT IFNULL(MAX(" + _ID + "), 0) + 1 FROM " + getTableName();
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * When _id is an alias for the unique key, copies the key into _id
+     */
+    private void updateId(T instance) {
+        if (info.hasIdColumn()) {
+            return;
+        }
+        try {
+            instance._id = info.getUniqueFields()[0].getLong(instance);
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Failed to read field", e);
+        }
+    }
+
+    public void update(T instance) {
+        updateRow(instance, getUniqueParams(instance));
+    }
+
+    private int updateRow(T instance, Param[] params) {
+        String sql = createUpdateStatement(createParameterizedQuery(params));
+        if (DEBUG) Log.d(TAG, "Updating existing entry. query{" + printQueryStatementForDebugging(params) + "}");
+        ContentValues values = getContentValues(instance);
+        SQLiteStatement statement = acquireStatement(sql);
+        int rowsUpdated;
+        try {
+            int index = bind(statement, values, /*includeId=*/false);
+            bind(statement, index, params);
+            rowsUpdated = statement.executeUpdateDelete();
+        } finally {
+            releaseStatement(sql, statement);
+            invalidate(instance);
+        }
+        if (rowsUpdated > 0) {
+            mirrorWrite(instance);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Saves the instance, either as a new row or over the row that shares its unique values (or _id,
+     * if it has none). Existing rows keep their _id, and the instance is given the row's _id.
+     *
+     * When every unique value is set, this is a single INSERT ... ON CONFLICT DO UPDATE statement.
+     * Use {@link #upsert(BaseModel)} if you need to know whether a row was inserted.
+     */
+    public void save(final T instance) {
+        if (DEBUG) Log.d(TAG, "Saving");
+        final Param[] params = getUniqueParams(instance);
+        if (!hasAllUniqueValues(params) || !dbHelper.supportsUpsert(info)) {
+            upsert(instance, params);
+            updateId(instance);
+            return;
+        }
+
+        String sql = getUpsertStatement();
+        final SQLiteStatement statement = acquireStatement(sql);
+        try {
+            runInTransaction(() -> {
+                executeInsert(statement, getContentValues(instance));
+                // SQLite doesn't say whether the row was inserted or updated, so the _id is read back
+                instance._id = queryId(params);
+            });
+        } finally {
+            releaseStatement(sql, statement);
+        }
+        updateId(instance);
+        invalidate(instance);
+        mirrorWrite(instance);
+    }
+
+    /**
+     * Updates the row that shares the instance's unique values (or _id, if it has none), or inserts
+     * a new row if there isn't one. Existing rows keep their _id.
+     *
+     * @return true if a new row was inserted, or false if an existing row was updated.
+     */
+    public boolean upsert(T instance) {
+        boolean inserted = upsert(instance, getUniqueParams(instance));
+        updateId(instance);
+        return inserted;
+    }
+
+    private boolean upsert(final T instance, final Param[] params) {
+        // A model without unique values that's never been saved can't match an existing row
+        if (!hasUniqueValues(params) && instance._id == 0) {
+            create(instance);
+            return true;
+        }
+
+        final boolean[] inserted = new boolean[1];
+        runInTransaction(() -> {
+            if (updateRow(instance, params) == 0) {
+                create(instance);
+                inserted[0] = true;
+            }
+        });
+        return inserted[0];
+    }
+
+    // False if the params fell back to matching on _id
+    private boolean hasUniqueValues(Param[] params) {
+        return params.length != 1 || !_ID.equals(params[0].getKey());
+    }
+
+    private boolean hasAllUniqueValues(Param[] params) {
+        return hasUniqueValues(params) && params.length == info.getUniqueColumns().length;
+    }
+
+    public void delete(T instance) {
+        int rowsDeleted = deleteRow(instance);
+        Log.i(TAG, "Removed " + rowsDeleted + " rows");
+    }
+
+    private int deleteRow(T instance) {
+        Param[] params = getUniqueParams(instance);
+        if (DEBUG) Log.d(TAG, "Deleting. query{" + printQueryStatementForDebugging(params) + "}");
+        int rowsDeleted;
+        try {
+            rowsDeleted = executeUpdateDelete(createDeleteStatement(createParameterizedQuery(params)), params);
+        } finally {
+            invalidate(instance);
+        }
+        mirrorDelete(params);
+        return rowsDeleted;
+    }
+
+    // Not every write notifies observers (eg. RemoteModel's cache refreshes), so the caches are
+    // invalidated here as well as in Model.notifyDataSetChanged()
+    private void invalidate(T instance) {
+        EntityCache<T> cache = info.getCache();
+        if (cache != null) {
+            cache.invalidate(instance);
+        }
+        QueryCache.invalidate(info.getModelClass());
+    }
+
+    // For writes that may touch any row
+    private void invalidateAll() {
+        EntityCache<T> cache = info.getCache();
+        if (cache != null) {
+            cache.clear();
+        }
+        QueryCache.invalidate(info.getModelClass());
+    }
+
+    /**
+     * Reads the instance's row back into the mirror, after it's been written. The row is re-read,
+     * rather than copied from the instance, since SQLite may have replaced other rows or kept the
+     * existing _id.
+     */
+    private void mirrorWrite(T instance) {
+        TableMirror<T> mirror = info.getMirror();
+        if (mirror == null) {
+            return;
+        }
+        boolean inTransaction = database.inTransaction();
+        if (!mirror.isLoaded() && !inTransaction) {
+            // Nothing to update, but a load that's already running must not be kept
+            mirror.clear(/*inTransaction=*/false);
+            return;
+        }
+        Param[] params = getUniqueParams(instance);
+        mirror.replace(params, inflateAll(cursor(null, null, null, params)), inTransaction);
+    }
+
+    // After the rows that match the params have been deleted
+    private void mirrorDelete(Param[] params) {
+        TableMirror<T> mirror = info.getMirror();
+        if (mirror != null) {
+            mirror.delete(params, database.inTransaction());
+        }
+    }
+
+    // After a write that can't be applied to the mirror row by row
+    private void mirrorClear() {
+        TableMirror<T> mirror = info.getMirror();
+        if (mirror != null) {
+            mirror.clear(database.inTransaction());
+        }
+    }
+
+    /**
+     * Returns the mirror, loading it if needed, or null if the model isn't mirrored. Reads inside of
+     * a transaction go to SQLite instead, since they may depend on the transaction's own writes.
+     */
+    private TableMirror<T> getMirror() {
+        TableMirror<T> mirror = info.getMirror();
+        if (mirror == null || database.inTransaction()) {
+            return null;
+        }
+        if (!mirror.isLoaded()) {
+            long generation = mirror.getGeneration();
+            mirror.load(getAll(), generation);
+        }
+        return mirror;
+    }
+
+    private List<T> copyAll(List<T> rows) {
+        List<T> copies = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            copies.add(copy(row));
+        }
+        return copies;
+    }
+
+    // Mirrored rows are copied out, so that callers can't change the mirror
+    private T copy(T row) {
+        return Transcriber.copy(row, newInstance(info.getModelClass(), dbHelper.getContext()));
+    }
+
+    /**
+     * Creates every instance, reusing a single compiled insert statement.
+     *
+     * @param chunkSize The number of rows written per transaction, or 0 to write them all at once.
+     */
+    public void createAll(Collection<T> instances, int chunkSize) {
+        if (DEBUG) Log.d(TAG, "Creating " + instances.size() + " entries");
+        final String sql = getInsertStatement();
+        runInChunks(instances, chunkSize, chunk -> {
+            SQLiteStatement statement = acquireStatement(sql);
+            try {
+                for (T instance : chunk) {
+                    instance._id = executeInsert(statement, getContentValues(instance));
+                    statement.clearBindings();
+                    invalidate(instance);
+                }
+            } finally {
+                releaseStatement(sql, statement);
+            }
+
+            // Bulk inserts reload the mirror, rather than reading back every row
+            mirrorClear();
+        });
+    }
+
+    /**
+     * Saves every instance.
+     *
+     * @param chunkSize The number of rows written per transaction, or 0 to write them all at once.
+     */
+    public void saveAll(Collection<T> instances, int chunkSize) {
+        if (DEBUG) Log.d(TAG, "Saving " + instances.size() + " entries");
+        runInChunks(instances, chunkSize, chunk -> {
+            for (T instance : chunk) {
+                save(instance);
+            }
+        });
+    }
+
+    /**
+     * Deletes every instance.
+     *
+     * @param chunkSize The number of rows written per transaction, or 0 to write them all at once.
+     */
+    public int deleteAll(Collection<T> instances, int chunkSize) {
+        final int[] rowsDeleted = new int[1];
+        runInChunks(instances, chunkSize, chunk -> {
+            for (T instance : chunk) {
+                rowsDeleted[0] += deleteRow(instance);
+            }
+        });
+        Log.i(TAG, "Removed " + rowsDeleted[0] + " rows");
+        return rowsDeleted[0];
+    }
+
+    /**
+     * Deletes the rows that match the params and saves the instances in their place, all within a
+     * single transaction.
+     */
+    public void replace(final Collection<T> instances, final Param... params) {
+        if (DEBUG) Log.d(TAG, "Replacing. query{" + printQueryStatementForDebugging(params) + "}");
+        runInTransaction(() -> {
+            delete(params);
+            for (T instance : instances) {
+                save(instance);
+            }
+        });
+    }
+
+    /**
+     * Runs the operation inside of a transaction. If the operation throws, nothing it wrote is kept.
+     */
+    void runInTransaction(Runnable operation) {
+        TableMirror<T> mirror = info.getMirror();
+        database.beginTransaction();
+        if (mirror != null) {
+            mirror.beginTransaction();
+        }
+        boolean successful = false;
+        try {
+            try {
+                operation.run();
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            successful = true;
+        } finally {
+            if (mirror != null) {
+                mirror.endTransaction(successful, database.inTransaction());
+            }
+        }
+    }
+
+    private interface ChunkOperation<T> {
+        void run(List<T> chunk);
+    }
+
+    private void runInChunks(Collection<T> instances, int chunkSize, final ChunkOperation<T> operation) {
+        final List<T> list = new ArrayList<>(instances);
+        int size = chunkSize > 0 ? chunkSize : list.size();
+        for (int start = 0; start < list.size(); start += size) {
+            final List<T> chunk = list.subList(start, Math.min(start + size, list.size()));
+            runInTransaction(() -> operation.run(chunk));
+        }
+    }
+
+    public long count(Param... params) {
+        if (DEBUG) Log.d(TAG, "Counting. query{" + printQueryStatementForDebugging(params) + "}");
+        TableMirror<T> mirror = getMirror();
+        long count = mirror == null ? -1 : mirror.count(params);
+        if (count >= 0) {
+            return count;
+        }
+        // Every row matches at most one chunk, so their counts add up
+        count = 0;
+        for (Param[] chunk : QueryChunks.split(0, params)) {
+            String sql = createCountStatement(createParameterizedQuery(chunk));
+            SQLiteStatement statement = acquireStatement(sql);
+            try {
+                bind(statement, 1, chunk);
+                count += statement.simpleQueryForLong();
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if any row matches. Stops at the first match, unlike {@link #count(Param...)}.
+     */
+    public boolean exists(Param... params) {
+        if (DEBUG) Log.d(TAG, "Exists. query{" + printQueryStatementForDebugging(params) + "}");
+        TableMirror<T> mirror = getMirror();
+        long count = mirror == null ? -1 : mirror.count(params);
+        if (count >= 0) {
+            return count > 0;
+        }
+        for (Param[] chunk : QueryChunks.split(0, params)) {
+            String sql = createExistsStatement(createParameterizedQuery(chunk));
+            SQLiteStatement statement = acquireStatement(sql);
+            try {
+                bind(statement, 1, chunk);
+                if (statement.simpleQueryForLong() != 0) {
+                    return true;
+                }
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the columns of every matching row to the given values, in a single UPDATE statement (or
+     * one per chunk of a long IN list, within a single transaction)
+     *
+     * @param values The column (key) and its new value, for every column to change.
+     * @return The number of rows that were updated.
+     */
+    public int update(final Param[] values, Param... params) {
+        if (DEBUG) Log.d(TAG, "Updating. values{" + printQueryStatementForDebugging(values) + "} query{" + printQueryStatementForDebugging(params) + "}");
+        final int[] rowsUpdated = { 0 };
+        try {
+            final List<Param[]> chunks = QueryChunks.split(values.length, params);
+            if (chunks.size() == 1) {
+                return updateChunk(values, params);
+            }
+            runInTransaction(() -> {
+                for (Param[] chunk : chunks) {
+                    rowsUpdated[0] += updateChunk(values, chunk);
+                }
+            });
+            return rowsUpdated[0];
+        } finally {
+            invalidateAll();
+            mirrorClear();
+        }
+    }
+
+    private int updateChunk(Param[] values, Param... params) {
+        StringBuilder builder = new StringBuilder("UPDATE ").append(getTableName()).append(" SET ");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(values[i].getKey()).append(" = ?");
+        }
+        appendClauses(builder, createParameterizedQuery(params), null, null);
+        String sql = builder.toString();
+
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            int index = 1;
+            for (Param value : values) {
+                bind(statement, index++, value.getUnformattedValue());
+            }
+            bind(statement, index, params);
+            return statement.executeUpdateDelete();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * Runs an aggregate function (eg. "MAX(timestamp)") over the matching rows
+     *
+     * @return The result, or null if there were no rows to aggregate.
+     */
+    public String aggregate(String function, Param... params) {
+        if (DEBUG) Log.d(TAG, "Aggregating " + function + ". query{" + printQueryStatementForDebugging(params) + "}");
+        List<Param[]> chunks = QueryChunks.split(0, params);
+        if (chunks.size() == 1) {
+            return aggregateChunk(function, params);
+        }
+
+        // Averages can't be combined, but their totals and counts can
+        String name = QueryChunks.getFunctionName(function);
+        if (name.equals("AVG")) {
+            String argument = QueryChunks.getFunctionArgument(function);
+            String total = null;
+            String count = null;
+            for (Param[] chunk : chunks) {
+                total = QueryChunks.combine("TOTAL", total, aggregateChunk("TOTAL(" + argument + ")", chunk));
+                count = QueryChunks.combine("COUNT", count, aggregateChunk("COUNT(" + argument + ")", chunk));
+            }
+            return Long.parseLong(count) == 0 ? null : Double.toString(Double.parseDouble(total) / Long.parseLong(count));
+        }
+        String result = null;
+        for (Param[] chunk : chunks) {
+            result = QueryChunks.combine(name, result, aggregateChunk(function, chunk));
+        }
+        return result;
+    }
+
+    private String aggregateChunk(String function, Param... params) {
+        String sql = createSelectStatement(new String[] { function }, createParameterizedQuery(params), null, null);
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            bind(statement, 1, params);
+            return statement.simpleQueryForString();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * Returns each distinct value of the column among the matching rows
+     */
+    public String[] distinct(String column, String orderBy, Param... params) {
+        List<Param[]> chunks = QueryChunks.split(0, params);
+        Set<String> values = new LinkedHashSet<>();
+        for (Param[] chunk : chunks) {
+            String sql = createSelectStatement(new String[] { info.getSelectColumn(column) }, createParameterizedQuery(chunk), orderBy, null);
+            Cursor cursor = rawCursor(sql.replaceFirst("SELECT ", "SELECT DISTINCT "), chunk);
+            try {
+                while (cursor.moveToNext()) {
+                    values.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        List<String> list = new ArrayList<>(values);
+        if (chunks.size() > 1) {
+            QueryChunks.sort(list, column, orderBy);
+        }
+        return list.toArray(new String[0]);
+    }
+
+    /**
+     * Counts the matching rows in each group of rows that share the column's value
+     */
+    public Map<String, Long> groupCount(String column, String orderBy, Param... params) {
+        Map<String, Long> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, String> group : groupBy(column, "COUNT(*)", orderBy, params).entrySet()) {
+            groups.put(group.getKey(), Long.parseLong(group.getValue()));
+        }
+        return groups;
+    }
+
+    /**
+     * Runs an aggregate function (eg. "MAX(timestamp)") over each group of matching rows that
+     * share the column's value. Groups where the function returns null map to null.
+     */
+    public Map<String, Double> groupAggregate(String column, String function, String orderBy, Param... params) {
+        Map<String, Double> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, String> group : groupBy(column, function, orderBy, params).entrySet()) {
+            groups.put(group.getKey(), group.getValue() == null ? null : Double.parseDouble(group.getValue()));
+        }
+        return groups;
+    }
+
+    // Runs the function over each group, combining the groups of every chunk of a long IN list
+    private Map<String, String> groupBy(String column, String function, String orderBy, Param... params) {
+        if (DEBUG) Log.d(TAG, "Grouping " + function + " by " + column + ". query{" + printQueryStatementForDebugging(params) + "}");
+        List<Param[]> chunks = QueryChunks.split(0, params);
+        String name = QueryChunks.getFunctionName(function);
+        if (chunks.size() == 1 || !name.equals("AVG")) {
+            Map<String, String> groups = new LinkedHashMap<>();
+            for (Param[] chunk : chunks) {
+                Cursor cursor = groupCursor(column, function, orderBy, chunk);
+                try {
+                    while (cursor.moveToNext()) {
+                        String key = cursor.getString(0);
+                        groups.put(key, QueryChunks.combine(name, groups.get(key), cursor.getString(1)));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return chunks.size() == 1 ? groups : sort(groups, column, orderBy);
+        }
+
+        // Averages can't be combined, but their totals and counts can
+        String argument = QueryChunks.getFunctionArgument(function);
+        Map<String, String> totals = groupBy(column, "TOTAL(" + argument + ")", orderBy, params);
+        Map<String, String> counts = groupBy(column, "COUNT(" + argument + ")", orderBy, params);
+        Map<String, String> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, String> total : totals.entrySet()) {
+            long count = Long.parseLong(counts.get(total.getKey()));
+            groups.put(total.getKey(), count == 0 ? null : Double.toString(Double.parseDouble(total.getValue()) / count));
+        }
+        return groups;
+    }
+
+    private static Map<String, String> sort(Map<String, String> groups, String column, String orderBy) {
+        List<String> keys = new ArrayList<>(groups.keySet());
+        QueryChunks.sort(keys, column, orderBy);
+        Map<String, String> sorted = new LinkedHashMap<>();
+        for (String key : keys) {
+            sorted.put(key, groups.get(key));
+        }
+        return sorted;
+    }
+
+    private Cursor groupCursor(String column, String function, String orderBy, Param... params) {
+        StringBuilder builder = new StringBuilder(createSelectStatement(new String[] { info.getSelectColumn(column), function }, null, null, null));
+        appendClauses(builder, createParameterizedQuery(params), null, null);
+        builder.append(" GROUP BY ").append(_ID.equals(column) ? info.getIdColumn() : column);
+        if (orderBy != null && !orderBy.isEmpty()) {
+            builder.append(" ORDER BY ").append(orderBy);
+        }
+        return rawCursor(builder.toString(), params);
+    }
+
+    // Deletes the matching rows, in one statement per chunk of a long IN list
+    private int executeDelete(Param... params) {
+        final List<Param[]> chunks = QueryChunks.split(0, params);
+        if (chunks.size() == 1) {
+            return executeUpdateDelete(createDeleteStatement(createParameterizedQuery(params)), params);
+        }
+        final int[] rowsDeleted = { 0 };
+        runInTransaction(() -> {
+            for (Param[] chunk : chunks) {
+                rowsDeleted[0] += executeUpdateDelete(createDeleteStatement(createParameterizedQuery(chunk)), chunk);
+            }
+        });
+        return rowsDeleted[0];
+    }
+
+    private int executeUpdateDelete(String sql, Param... params) {
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            bind(statement, 1, params);
+            return statement.executeUpdateDelete();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    private String getInsertStatement() {
+        if (insertStatement == null) {
+            insertStatement = createInsertStatement();
+        }
+        return insertStatement;
+    }
+
+    private String getUpsertStatement() {
+        if (upsertStatement == null) {
+            upsertStatement = createUpsertStatement();
+        }
+        return upsertStatement;
+    }
+
+    public void dropTable() {
+        dbHelper.dropTable(database, info);
+        invalidateAll();
+        mirrorClear();
+    }
+
+    public List<T> query(String orderBy, Param... params) {
+        return query(null, orderBy, null, params);
+    }
+
+    public List<T> query(String orderBy, int limit, Param... params) {
+        return query(null, orderBy, Integer.toString(limit), params);
+    }
+
+    public List<T> query(String orderBy, int limit, int offset, Param... params) {
+        return query(null, orderBy, offset + "," + limit, params);
+    }
+
+    /**
+     * Returns the matching rows, with only the given columns inflated. Fields for the other columns
+     * are left at their defaults.
+     *
+     * @param columns The columns to read, or null for every column.
+     * @param limit The SQL limit clause (eg. "10" or "20,10"), or null for every row.
+     */
+    public List<T> query(String[] columns, String orderBy, String limit, Param... params) {
+        TableMirror<T> mirror = columns == null ? getMirror() : null;
+        List<T> rows = mirror == null ? null : mirror.query(orderBy, limit, params);
+        if (rows != null) {
+            return copyAll(rows);
+        }
+        return inflateAll(cursor(columns, orderBy, limit, params));
+    }
+
+    public T first(String orderBy, Param... params) {
+        return first(null, orderBy, params);
+    }
+
+    /**
+     * Returns the first matching row. Lookups of every unique value (or _id) are served from the
+     * model's {@link EntityCache}, if it has one, when every column is read.
+     */
+    public T first(String[] columns, String orderBy, Param... params) {
+        EntityCache<T> cache = columns == null ? info.getCache() : null;
+        long generation = 0;
+        if (cache != null) {
+            T cached = cache.get(dbHelper.getContext(), params);
+            if (cached != null) {
+                return cached;
+            }
+            generation = cache.getGeneration();
+        }
+
+        TableMirror<T> mirror = columns == null ? getMirror() : null;
+        List<T> rows = mirror == null ? null : mirror.query(orderBy, "1", params);
+        if (rows != null) {
+            return rows.isEmpty() ? null : copy(rows.get(0));
+        }
+
+        T instance = null;
+        if (DEBUG) Log.d(TAG, "First. query{" + printQueryStatementForDebugging(params) + "}");
+        Cursor cursor = cursor(columns, orderBy, "1", params);
+        cursor.moveToFirst();
+        if (!cursor.isAfterLast()) {
+            instance = newInstance(info.getModelClass(), dbHelper.getContext());
+            inflate(instance, cursor, info.getColumnIndices(cursor));
+        }
+        cursor.close();
+        if (cache != null && instance != null) {
+            cache.put(dbHelper.getContext(), instance, generation, params);
+        }
+        return instance;
+    }
+
+    List<T> rawQuery(String sql, Param... params) {
+        return inflateAll(rawCursor(sql, params));
+    }
+
+    private List<T> inflateAll(Cursor cursor) {
+        List<T> list = new ArrayList<>();
+        int[] indices = info.getColumnIndices(cursor);
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            T newInstance = newInstance(info.getModelClass(), dbHelper.getContext());
+            inflate(newInstance, cursor, indices);
+            list.add(newInstance);
+            cursor.moveToNext();
+        }
+        cursor.close();
+        return list;
+    }
+
+    public Cursor cursor(String orderBy, Param... params) {
+        return cursor(null, orderBy, null, params);
+    }
+
+    /**
+     * Returns a cursor over the matching rows
+     *
+     * @param limit The SQL limit clause (eg. "10" or "20,10"), or null for every row.
+     */
+    public Cursor cursor(String orderBy, String limit, Param... params) {
+        return cursor(null, orderBy, limit, params);
+    }
+
+    /**
+     * Returns a cursor over the given columns of the matching rows. If a long IN list is split
+     * across several statements, their rows are read into memory and merged, and can only be
+     * ordered by plain columns.
+     *
+     * @param columns The columns to read, or null for every column.
+     * @param limit The SQL limit clause (eg. "10" or "20,10"), or null for every row.
+     */
+    public Cursor cursor(String[] columns, String orderBy, String limit, Param... params) {
+        List<Param[]> chunks = QueryChunks.split(0, params);
+        if (chunks.size() == 1) {
+            // SQLite keeps the compiled form of recently used SELECTs, so reusing the same SQL skips recompiling it.
+            return rawCursor(createSelectStatement(select(columns), createParameterizedQuery(params), orderBy, limit), params);
+        }
+
+        String[] selection = QueryChunks.withOrderColumns(select(columns), orderBy);
+        String chunkLimit = QueryChunks.getChunkLimit(limit);
+        List<Cursor> cursors = new ArrayList<>(chunks.size());
+        for (Param[] chunk : chunks) {
+            cursors.add(rawCursor(createSelectStatement(selection, createParameterizedQuery(chunk), orderBy, chunkLimit), chunk));
+        }
+        return QueryChunks.merge(cursors, orderBy, limit);
+    }
+
+    private String[] select(String[] columns) {
+        if (columns == null) {
+            return info.getSelectColumns();
+        }
+        String[] selection = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            selection[i] = info.getSelectColumn(columns[i]);
+        }
+        return selection;
+    }
+
+    /**
+     * Reads a single column of the matching rows, without inflating any models
+     */
+    public long[] queryLongs(String column, String orderBy, Param... params) {
+        Cursor cursor = projectionCursor(column, orderBy, params);
+        try {
+            long[] values = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getLong(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public int[] queryInts(String column, String orderBy, Param... params) {
+        Cursor cursor = projectionCursor(column, orderBy, params);
+        try {
+            int[] values = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getInt(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public float[] queryFloats(String column, String orderBy, Param... params) {
+        Cursor cursor = projectionCursor(column, orderBy, params);
+        try {
+            float[] values = new float[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getFloat(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public String[] queryStrings(String column, String orderBy, Param... params) {
+        Cursor cursor = projectionCursor(column, orderBy, params);
+        try {
+            String[] values = new String[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getString(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Cursor projectionCursor(String column, String orderBy, Param... params) {
+        if (DEBUG) Log.d(TAG, "Projecting " + column + ". query{" + printQueryStatementForDebugging(params) + "}");
+        return cursor(new String[] { column }, orderBy, null, params);
+    }
+
+    ModelInfo<T> getModelInfo() {
+        return info;
+    }
+
+    public List<T> getAll() {
+        List<T> list = new ArrayList<>();
+        Cursor cursor = database.query(getTableName(), info.getSelectColumns(), null, null, null, null, null);
+        int[] indices = info.getColumnIndices(cursor);
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            T newInstance = newInstance(info.getModelClass(), dbHelper.getContext());
+            inflate(newInstance, cursor, indices);
+            list.add(newInstance);
+            cursor.moveToNext();
+        }
+        cursor.close();
+        return list;
+    }
+
+    public int delete(Param... params) {
+        int rowsDeleted = executeDelete(params);
+        invalidateAll();
+        mirrorDelete(params);
+        Log.i(TAG, "Removed " + rowsDeleted + " rows");
+        return rowsDeleted;
+    }
+}
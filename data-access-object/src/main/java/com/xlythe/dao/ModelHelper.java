@@ -0,0 +1,358 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.xlythe.dao.BaseModel.DEBUG;
+import static com.xlythe.dao.BaseModel._ID;
+import static com.xlythe.dao.Model.TAG;
+
+/**
+ * Opens the database file that models are stored in. There's one helper per database, shared by
+ * every model (and every instance of those models) stored inside of it. See {@link ConnectionManager}.
+ */
+final class ModelHelper extends SQLiteOpenHelper {
+    // INSERT ... ON CONFLICT DO UPDATE was added in SQLite 3.24
+    private static final int[] UPSERT_VERSION = { 3, 24 };
+
+    private final Context mContext;
+    private final Map<Class<?>, ModelDataSource<?>> mDataSources = new HashMap<>();
+    private final List<ModelInfo<?>> mTables = new ArrayList<>();
+
+    // Tables that have been created since the database was opened
+    private final Set<String> mCreatedTables = new HashSet<>();
+
+    // Tables with a unique index over their @Unique columns, which upserts need to detect conflicts
+    private final Set<String> mUniqueTables = new HashSet<>();
+
+    private final StatementCache mStatementCache = new StatementCache();
+
+    private SQLiteDatabase mDatabase;
+    private int mOpenCount;
+    private boolean mSupportsUpsert;
+
+    ModelHelper(Context context, String databaseName, int version) {
+        super(context, databaseName, null, version);
+        mContext = context;
+    }
+
+    Context getContext() {
+        return mContext;
+    }
+
+    StatementCache getStatementCache() {
+        return mStatementCache;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T extends BaseModel<T>> ModelDataSource<T> getDataSource(ModelInfo<T> info) {
+        ModelDataSource<T> dataSource = (ModelDataSource<T>) mDataSources.get(info.getModelClass());
+        if (dataSource == null) {
+            dataSource = new ModelDataSource<>(this, info);
+            mDataSources.put(info.getModelClass(), dataSource);
+            mTables.add(info);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Opens the database, if it isn't already open. Every call must be paired with {@link #release()}.
+     */
+    synchronized SQLiteDatabase acquire() {
+        if (mDatabase == null || !mDatabase.isOpen()) {
+            mCreatedTables.clear();
+            mUniqueTables.clear();
+            mStatementCache.clear();
+            mDatabase = getWritableDatabase();
+            mSupportsUpsert = isAtLeast(getSqliteVersion(mDatabase), UPSERT_VERSION);
+        }
+        mOpenCount++;
+        ConnectionManager.onActive(this);
+        return mDatabase;
+    }
+
+    /**
+     * Marks the database as unused. It'll be closed by the {@link ConnectionManager} once it's
+     * been idle for a while.
+     */
+    synchronized void release() {
+        if (mOpenCount == 0) {
+            Log.w(TAG, "Database " + getDatabaseName() + " was released more times than it was acquired");
+            return;
+        }
+        if (--mOpenCount == 0) {
+            ConnectionManager.onIdle(this);
+        }
+    }
+
+    synchronized void closeIfIdle() {
+        if (mOpenCount == 0 && mDatabase != null) {
+            mStatementCache.clear();
+            close();
+            mDatabase = null;
+            mCreatedTables.clear();
+            mUniqueTables.clear();
+        }
+    }
+
+    /**
+     * Returns true if rows in the model's table can be saved with a single
+     * INSERT ... ON CONFLICT DO UPDATE statement.
+     */
+    synchronized boolean supportsUpsert(ModelInfo<?> info) {
+        return mSupportsUpsert && mUniqueTables.contains(info.getTableName());
+    }
+
+    /**
+     * Creates the model's table, unless we've already done so since the database was opened.
+     */
+    synchronized void ensureTable(SQLiteDatabase database, ModelInfo<?> info) {
+        if (!mCreatedTables.contains(info.getTableName())) {
+            createTable(database, info);
+        }
+    }
+
+    @Override
+    public synchronized void onCreate(SQLiteDatabase database) {
+        for (ModelInfo<?> info : mTables) {
+            createTable(database, info);
+        }
+    }
+
+    @Override
+    public synchronized void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        for (ModelInfo<?> info : mTables) {
+            upgradeTable(database, info, oldVersion, newVersion);
+        }
+    }
+
+    synchronized void createTable(SQLiteDatabase database, ModelInfo<?> info) {
+        String[] columns = info.getColumns();
+        String[] types = info.getTypes();
+        Database.Layout layout = info.getLayout();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("create table if not exists ");
+        builder.append(info.getTableName());
+        builder.append("(");
+        if (layout == Database.Layout.AUTOINCREMENT) {
+            builder.append(_ID).append(" integer primary key autoincrement");
+        } else if (layout == Database.Layout.ROWID) {
+            builder.append(_ID).append(" integer primary key");
+        } else if (layout == Database.Layout.WITHOUT_ROWID) {
+            builder.append(_ID).append(" integer not null");
+        }
+
+        boolean first = layout == Database.Layout.UNIQUE_ROWID;
+        for (int i = 0; i < columns.length; i++) {
+            if (_ID.equals(columns[i])) {
+                continue;
+            }
+            if (!first) {
+                builder.append(", ");
+            }
+            first = false;
+            builder.append(columns[i]);
+            builder.append(" ");
+            builder.append(types[i]);
+            if (layout == Database.Layout.UNIQUE_ROWID && columns[i].equals(info.getUniqueColumns()[0])) {
+                // An integer primary key is an alias for the rowid
+                builder.append(" primary key");
+            }
+        }
+
+        if (layout == Database.Layout.WITHOUT_ROWID) {
+            builder.append(", primary key(");
+            appendColumns(builder, info.getUniqueColumns());
+            builder.append(")) without rowid;");
+        } else {
+            builder.append(");");
+        }
+        String createStatement = builder.toString();
+        if (DEBUG) {
+            Log.v(TAG, "Creating table: " + createStatement);
+        }
+        database.execSQL(createStatement);
+        mCreatedTables.add(info.getTableName());
+        if (layout == Database.Layout.WITHOUT_ROWID) {
+            // Without a rowid, _id needs its own index to be looked up (or to find the next id) quickly
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + info.getTableName() + "__id ON " + info.getTableName() + "(" + _ID + ");");
+        }
+        createUniqueIndex(database, info);
+        createIndices(database, info);
+    }
+
+    private static void appendColumns(StringBuilder builder, String[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(columns[i]);
+        }
+    }
+
+    private void createUniqueIndex(SQLiteDatabase database, ModelInfo<?> info) {
+        String[] uniqueColumns = info.getUniqueColumns();
+        if (uniqueColumns.length == 0) {
+            return;
+        }
+
+        // The primary key is already a unique index over the unique columns
+        if (info.isKeyedByUniqueColumns()) {
+            mUniqueTables.add(info.getTableName());
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("CREATE UNIQUE INDEX IF NOT EXISTS ");
+        builder.append(info.getTableName());
+        builder.append("_unique ON ");
+        builder.append(info.getTableName());
+        builder.append("(");
+        appendColumns(builder, uniqueColumns);
+        builder.append(");");
+        try {
+            database.execSQL(builder.toString());
+            mUniqueTables.add(info.getTableName());
+        } catch (SQLiteConstraintException e) {
+            // Rows saved by older versions may share unique values. Saves fall back to UPDATE then
+            // INSERT, and inserts keep adding duplicates rather than replacing the existing row.
+            Log.w(TAG, "Rows of " + info.getTableName() + " share @Unique values, so they can't be given a unique index", e);
+        }
+    }
+
+    /**
+     * Creates the indices declared with @Index. Indices that have changed since they were created
+     * are rebuilt, and ones that are no longer declared are dropped.
+     */
+    private void createIndices(SQLiteDatabase database, ModelInfo<?> info) {
+        String prefix = ModelInfo.IndexInfo.getPrefix(info.getTableName());
+
+        // The indices we've created before, and the SQL that created them
+        Map<String, String> existingIndices = new HashMap<>();
+        Cursor cursor = database.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+                new String[] { info.getTableName() });
+        try {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                if (name.startsWith(prefix)) {
+                    existingIndices.put(name, cursor.getString(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (ModelInfo.IndexInfo index : info.getIndices()) {
+            String createStatement = createIndexStatement(info, index);
+            String existingStatement = existingIndices.remove(index.name);
+            if (createStatement.equals(existingStatement)) {
+                continue;
+            }
+            if (existingStatement != null) {
+                database.execSQL("DROP INDEX IF EXISTS " + index.name);
+            }
+            if (DEBUG) {
+                Log.v(TAG, "Creating index: " + createStatement);
+            }
+            try {
+                database.execSQL(createStatement);
+            } catch (SQLiteConstraintException e) {
+                Log.w(TAG, "Rows of " + info.getTableName() + " share values, so they can't be given the unique index " + index.name, e);
+            } catch (SQLiteException e) {
+                // Eg. the SQLite version doesn't support partial indices
+                Log.w(TAG, "Failed to create index " + index.name, e);
+            }
+        }
+
+        for (String name : existingIndices.keySet()) {
+            database.execSQL("DROP INDEX IF EXISTS " + name);
+        }
+    }
+
+    // Executed as-is, so that it matches the SQL that sqlite_master keeps for the index
+    private static String createIndexStatement(ModelInfo<?> info, ModelInfo.IndexInfo index) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(index.unique ? "CREATE UNIQUE INDEX " : "CREATE INDEX ");
+        builder.append(index.name);
+        builder.append(" ON ");
+        builder.append(info.getTableName());
+        builder.append("(");
+        appendColumns(builder, index.columns);
+        builder.append(")");
+        if (!index.where.isEmpty()) {
+            builder.append(" WHERE ").append(index.where);
+        }
+        return builder.toString();
+    }
+
+    synchronized void dropTable(SQLiteDatabase database, ModelInfo<?> info) {
+        database.execSQL("DROP TABLE IF EXISTS " + info.getTableName() + ";");
+        mCreatedTables.remove(info.getTableName());
+        mUniqueTables.remove(info.getTableName());
+    }
+
+    private void upgradeTable(SQLiteDatabase database, ModelInfo<?> info, int oldVersion, int newVersion) {
+        if (info.retainDataOnUpgrade()) {
+            Field[] fields = info.getFields();
+            String[] columns = info.getColumns();
+            String[] types = info.getTypes();
+            for (int i = oldVersion + 1; i <= newVersion; i++) {
+                for (int j = 0; j < fields.length; j++) {
+                    Field field = fields[j];
+                    if (field.isAnnotationPresent(Version.class)) {
+                        int value = field.getAnnotation(Version.class).value();
+                        if (value == i) {
+                            database.execSQL("ALTER TABLE " + info.getTableName() + " ADD COLUMN " + columns[j] + " " + types[j]);
+                        }
+                    }
+                }
+            }
+        } else {
+            dropTable(database, info);
+            createTable(database, info);
+        }
+    }
+
+    private static String getSqliteVersion(SQLiteDatabase database) {
+        SQLiteStatement statement = database.compileStatement("SELECT sqlite_version()");
+        try {
+            return statement.simpleQueryForString();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static boolean isAtLeast(String version, int[] minimum) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.split("\\.");
+        try {
+            for (int i = 0; i < minimum.length; i++) {
+                int part = i < parts.length ? Integer.parseInt(parts[i]) : 0;
+                if (part != minimum[i]) {
+                    return part > minimum[i];
+                }
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Unable to parse SQLite version " + version, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.xlythe.dao.Model.TAG;
+
+/**
+ * Everything we learn about a model class through reflection. Built once per class, per process.
+ */
+final class ModelInfo<T extends BaseModel<T>> {
+    private static final ConcurrentHashMap<Class<?>, ModelInfo<?>> CACHE = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    static <T extends BaseModel<T>> ModelInfo<T> get(Class<T> clazz) {
+        ModelInfo<T> info = (ModelInfo<T>) CACHE.get(clazz);
+        if (info == null) {
+            info = new ModelInfo<>(clazz);
+            ModelInfo<T> existing = (ModelInfo<T>) CACHE.putIfAbsent(clazz, info);
+            if (existing != null) {
+                info = existing;
+            }
+        }
+        return info;
+    }
+
+    private final Class<T> modelClass;
+
+    // The persisted fields, with _id last
+    private final Field[] fields;
+
+    // These are the column names (eg. _id) for each field
+    private final String[] columns;
+
+    // These are the associated types (eg. int) for each column
+    private final String[] types;
+
+    // The fields marked as @Unique, and their column names
+    private final Field[] uniqueFields;
+    private final String[] uniqueColumns;
+
+    private final Map<String, Field> fieldsByColumn;
+
+    // The indices declared with @Index, not including the unique index over the @Unique columns
+    private final IndexInfo[] indices;
+
+    private final String tableName;
+    private final String databaseName;
+    private final int databaseVersion;
+    private final boolean retainDataOnUpgrade;
+    private final Database.Layout layout;
+
+    // Recently read rows, or null if the model isn't cached
+    private final EntityCache<T> cache;
+
+    // True if every query is served from the QueryCache
+    private final boolean cacheQueries;
+
+    // An in-memory copy of the table, or null if the model isn't mirrored
+    private final TableMirror<T> mirror;
+
+    // The columns to SELECT, which is every column, except that _id may be read from an alias
+    private final String[] selectColumns;
+
+    // The constructor that takes a Context, or null if the model doesn't have one
+    private final Constructor<T> constructor;
+
+    // The generated adapter, or null if the model falls back to reflection
+    private final ModelAdapter<T> adapter;
+
+    // The columns that are read from cursors. Either the adapter's columns, or ours.
+    private final String[] cursorColumns;
+
+    // The column indices for the last cursor we saw, since rows tend to be read from the same cursor
+    private volatile CursorIndices lastCursorIndices;
+
+    private ModelInfo(Class<T> clazz) {
+        modelClass = clazz;
+
+        List<Field> fieldList = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!Modifier.isTransient(field.getModifiers())
+                    && !Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                fieldList.add(field);
+            }
+        }
+        try {
+            Field field = BaseModel.class.getDeclaredField(BaseModel._ID);
+            field.setAccessible(true);
+            fieldList.add(field);
+        } catch (NoSuchFieldException e) {
+            Log.e(TAG, "Failed to find field _ID", e);
+        }
+        fields = fieldList.toArray(new Field[0]);
+
+        columns = new String[fields.length];
+        types = new String[fields.length];
+        fieldsByColumn = new HashMap<>();
+        List<Field> uniqueFieldList = new ArrayList<>();
+        List<String> uniqueColumnList = new ArrayList<>();
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            columns[i] = Transcriber.getName(field);
+            types[i] = Util.getType(field);
+            fieldsByColumn.put(columns[i], field);
+            if (Util.isUnique(field)) {
+                uniqueFieldList.add(field);
+                uniqueColumnList.add(columns[i]);
+            }
+        }
+        uniqueFields = uniqueFieldList.toArray(new Field[0]);
+        uniqueColumns = uniqueColumnList.toArray(new String[0]);
+
+        tableName = Util.getTableName(clazz);
+        indices = loadIndices();
+        databaseName = Util.getDatabaseName(clazz);
+        databaseVersion = Util.getDatabaseVersion(clazz);
+        retainDataOnUpgrade = Util.retainDataOnUpgrade(clazz);
+        layout = Util.getLayout(clazz);
+        if (layout == Database.Layout.UNIQUE_ROWID
+                && (uniqueFields.length != 1 || !(Util.isInt(uniqueFields[0]) || Util.isLong(uniqueFields[0])))) {
+            throw new IllegalArgumentException(clazz.getSimpleName() + " must have exactly one @Unique int or long field to use UNIQUE_ROWID");
+        }
+        if (layout == Database.Layout.WITHOUT_ROWID && uniqueFields.length == 0) {
+            throw new IllegalArgumentException(clazz.getSimpleName() + " must have a @Unique field to use WITHOUT_ROWID");
+        }
+        selectColumns = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            selectColumns[i] = getSelectColumn(columns[i]);
+        }
+
+        Constructor<T> constructor = null;
+        try {
+            constructor = clazz.getDeclaredConstructor(Context.class);
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            Log.e(TAG, "Failed to find constructor", e);
+        }
+        this.constructor = constructor;
+
+        adapter = Transcriber.loadAdapter(clazz);
+        cursorColumns = adapter != null ? adapter.getColumnNames() : columns;
+
+        int cacheSize = Util.getCacheSize(clazz);
+        cache = cacheSize > 0 ? new EntityCache<>(this, cacheSize) : null;
+        cacheQueries = Util.cacheQueries(clazz);
+        mirror = Util.isMirrored(clazz) ? new TableMirror<>(this) : null;
+    }
+
+    Class<T> getModelClass() {
+        return modelClass;
+    }
+
+    Field[] getFields() {
+        return fields;
+    }
+
+    String[] getColumns() {
+        return columns;
+    }
+
+    String[] getTypes() {
+        return types;
+    }
+
+    Field[] getUniqueFields() {
+        return uniqueFields;
+    }
+
+    String[] getUniqueColumns() {
+        return uniqueColumns;
+    }
+
+    Field getField(String columnName) throws NoSuchFieldException {
+        Field field = fieldsByColumn.get(columnName);
+        if (field == null) {
+            throw new NoSuchFieldException("No field " + columnName + " in class " + modelClass);
+        }
+        return field;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    IndexInfo[] getIndices() {
+        return indices;
+    }
+
+    String getDatabaseName() {
+        return databaseName;
+    }
+
+    int getDatabaseVersion() {
+        return databaseVersion;
+    }
+
+    boolean retainDataOnUpgrade() {
+        return retainDataOnUpgrade;
+    }
+
+    Database.Layout getLayout() {
+        return layout;
+    }
+
+    EntityCache<T> getCache() {
+        return cache;
+    }
+
+    boolean cacheQueries() {
+        return cacheQueries;
+    }
+
+    TableMirror<T> getMirror() {
+        return mirror;
+    }
+
+    /**
+     * Returns true if _id is stored as its own column. Otherwise, it's an alias for the unique key.
+     */
+    boolean hasIdColumn() {
+        return layout != Database.Layout.UNIQUE_ROWID;
+    }
+
+    /**
+     * Returns true if the table's primary key is the @Unique columns, rather than _id
+     */
+    boolean isKeyedByUniqueColumns() {
+        return layout == Database.Layout.UNIQUE_ROWID || layout == Database.Layout.WITHOUT_ROWID;
+    }
+
+    /**
+     * Returns the column that holds _id, for use in WHERE and ORDER BY clauses
+     */
+    String getIdColumn() {
+        return hasIdColumn() ? BaseModel._ID : uniqueColumns[0];
+    }
+
+    String[] getSelectColumns() {
+        return selectColumns;
+    }
+
+    /**
+     * Returns the SQL to SELECT the column with, so that it's read back under its own name
+     */
+    String getSelectColumn(String column) {
+        if (BaseModel._ID.equals(column) && !hasIdColumn()) {
+            return uniqueColumns[0] + " AS " + BaseModel._ID;
+        }
+        return column;
+    }
+
+    Constructor<T> getConstructor() {
+        return constructor;
+    }
+
+    ModelAdapter<T> getAdapter() {
+        return adapter;
+    }
+
+    /**
+     * Returns the cursor's index for each column we read, in the order that {@link Transcriber}
+     * expects them. The indices are remembered for the last cursor, so that looking them up again
+     * for the next row is free.
+     */
+    int[] getColumnIndices(Cursor cursor) {
+        CursorIndices last = lastCursorIndices;
+        if (last != null && last.cursor.get() == cursor) {
+            return last.indices;
+        }
+
+        int[] indices = new int[cursorColumns.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = cursor.getColumnIndex(cursorColumns[i]);
+        }
+        lastCursorIndices = new CursorIndices(cursor, indices);
+        return indices;
+    }
+
+    private IndexInfo[] loadIndices() {
+        List<IndexInfo> list = new ArrayList<>();
+        for (int i = 0; i < fields.length; i++) {
+            Index index = fields[i].getAnnotation(Index.class);
+            if (index != null) {
+                list.add(new IndexInfo(tableName, index, new String[] { columns[i] }));
+            }
+        }
+        if (modelClass.isAnnotationPresent(Index.class)) {
+            list.add(newIndexInfo(modelClass.getAnnotation(Index.class)));
+        }
+        if (modelClass.isAnnotationPresent(Indices.class)) {
+            for (Index index : modelClass.getAnnotation(Indices.class).value()) {
+                list.add(newIndexInfo(index));
+            }
+        }
+        return list.toArray(new IndexInfo[0]);
+    }
+
+    private IndexInfo newIndexInfo(Index index) {
+        if (index.columns().length == 0) {
+            throw new IllegalArgumentException("@Index on " + modelClass.getSimpleName() + " must list its columns");
+        }
+        for (String column : index.columns()) {
+            if (!fieldsByColumn.containsKey(column)) {
+                throw new IllegalArgumentException("@Index on " + modelClass.getSimpleName() + " refers to unknown column " + column);
+            }
+        }
+        return new IndexInfo(tableName, index, index.columns());
+    }
+
+    /**
+     * An index declared with {@link Index}
+     */
+    static final class IndexInfo {
+        // Every declared index is named with this prefix, so that we know which indices are ours to drop
+        static String getPrefix(String tableName) {
+            return tableName + "_index_";
+        }
+
+        final String name;
+        final String[] columns;
+        final boolean unique;
+        final String where;
+
+        IndexInfo(String tableName, Index index, String[] columns) {
+            this.name = getPrefix(tableName) + (index.name().isEmpty() ? TextUtils.join("_", columns) : index.name());
+            this.columns = columns;
+            this.unique = index.unique();
+            this.where = index.where();
+        }
+    }
+
+    private static final class CursorIndices {
+        final WeakReference<Cursor> cursor;
+        final int[] indices;
+
+        CursorIndices(Cursor cursor, int[] indices) {
+            this.cursor = new WeakReference<>(cursor);
+            this.indices = indices;
+        }
+    }
+}
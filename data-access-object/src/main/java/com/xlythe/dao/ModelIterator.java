@@ -0,0 +1,70 @@
+package com.xlythe.dao;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.xlythe.dao.Transcriber.inflate;
+
+/**
+ * Reads a cursor forward, one row at a time, into a single reused instance. Every call to
+ * {@link #next()} returns that same instance with the next row's values, so nothing is allocated
+ * per row. Copy out anything that needs to outlive the current row.
+ *
+ * Holds the database open until it's closed, or until the last row has been read. Not thread safe.
+ */
+public class ModelIterator<T extends BaseModel<T>> implements Iterator<T>, Closeable {
+    private final Cursor mCursor;
+    private final T mInstance;
+    private final int[] mIndices;
+    private boolean mHasNext;
+    private boolean mMoved;
+    private boolean mClosed;
+
+    ModelIterator(Cursor cursor, T instance) {
+        mCursor = cursor;
+        mInstance = instance;
+        mIndices = instance.getModelInfo().getColumnIndices(cursor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mClosed) {
+            return false;
+        }
+        if (!mMoved) {
+            mHasNext = mCursor.moveToNext();
+            mMoved = true;
+            if (!mHasNext) {
+                close();
+            }
+        }
+        return mHasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        mMoved = false;
+        return inflate(mInstance, mCursor, mIndices);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Rows can't be removed while scanning");
+    }
+
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mHasNext = false;
+        mCursor.close();
+    }
+}
@@ -0,0 +1,159 @@
+package com.xlythe.dao;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.xlythe.dao.BaseModel.DEBUG;
+import static com.xlythe.dao.Model.TAG;
+
+/**
+ * The observers of every model, and how they're notified. Observers may be registered, removed
+ * and notified from any thread.
+ *
+ * By default, observers are called on the thread that made the change, once per change. With a
+ * coalescing window, the first change to a model starts the window, and every change made before
+ * it ends is delivered in a single callback.
+ */
+final class ObserverRegistry {
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private static final ConcurrentHashMap<Class<?>, Set<Model.Observer>> OBSERVERS = new ConcurrentHashMap<>();
+
+    // Changes waiting for their coalescing window to end, by model
+    private static final Map<Class<?>, PendingChanges> PENDING = new HashMap<>();
+
+    private static volatile Executor sExecutor = DIRECT_EXECUTOR;
+    private static volatile long sWindowMillis = 0;
+
+    // Guarded by PENDING
+    private static ScheduledExecutorService sScheduler;
+
+    private ObserverRegistry() {}
+
+    static void register(Class<?> clazz, Model.Observer observer) {
+        Set<Model.Observer> observers = OBSERVERS.get(clazz);
+        if (observers == null) {
+            observers = new CopyOnWriteArraySet<>();
+            Set<Model.Observer> existing = OBSERVERS.putIfAbsent(clazz, observers);
+            if (existing != null) {
+                observers = existing;
+            }
+        }
+        observers.add(observer);
+    }
+
+    static void unregister(Class<?> clazz, Model.Observer observer) {
+        Set<Model.Observer> observers = OBSERVERS.get(clazz);
+        if (observers != null) {
+            observers.remove(observer);
+        }
+    }
+
+    static void setExecutor(Executor executor) {
+        sExecutor = executor == null ? DIRECT_EXECUTOR : executor;
+    }
+
+    static void setCoalescingWindow(long window, TimeUnit unit) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Window must be non-negative");
+        }
+        sWindowMillis = unit.toMillis(window);
+        if (sWindowMillis == 0) {
+            flush();
+        }
+    }
+
+    static void notify(final Class<?> clazz, ChangeSet changes) {
+        long window = sWindowMillis;
+        if (window == 0) {
+            dispatch(clazz, changes);
+            return;
+        }
+
+        synchronized (PENDING) {
+            PendingChanges pending = PENDING.get(clazz);
+            if (pending != null) {
+                pending.add(changes);
+                return;
+            }
+            pending = new PendingChanges();
+            pending.add(changes);
+            PENDING.put(clazz, pending);
+            getScheduler().schedule(() -> flush(clazz), window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Delivers every pending change now, rather than waiting for their windows to end
+     */
+    static void flush() {
+        List<Class<?>> classes;
+        synchronized (PENDING) {
+            classes = new ArrayList<>(PENDING.keySet());
+        }
+        for (Class<?> clazz : classes) {
+            flush(clazz);
+        }
+    }
+
+    private static void flush(Class<?> clazz) {
+        PendingChanges pending;
+        synchronized (PENDING) {
+            pending = PENDING.remove(clazz);
+        }
+        if (pending != null) {
+            dispatch(clazz, ChangeSet.of(pending.changes, pending.complete));
+        }
+    }
+
+    private static void dispatch(Class<?> clazz, final ChangeSet changes) {
+        if (DEBUG) Log.d(TAG, "Notifying observers for " + clazz + " of " + changes);
+        Set<Model.Observer> observers = OBSERVERS.get(clazz);
+        if (observers == null || observers.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "No observers found");
+            return;
+        }
+
+        Executor executor = sExecutor;
+        for (final Model.Observer observer : observers) {
+            executor.execute(() -> observer.onChange(changes));
+        }
+    }
+
+    // Must be called while holding PENDING
+    private static ScheduledExecutorService getScheduler() {
+        if (sScheduler == null) {
+            sScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "DAO-ObserverRegistry");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sScheduler;
+    }
+
+    /**
+     * The changes made so far in a coalescing window. They're appended in place, so that a burst of
+     * changes doesn't copy the list every time, and frozen into a ChangeSet once the window ends.
+     */
+    private static final class PendingChanges {
+        final List<ChangeSet.Change> changes = new ArrayList<>();
+        boolean complete = true;
+
+        void add(ChangeSet changeSet) {
+            changes.addAll(changeSet.getChanges());
+            complete &= changeSet.isComplete();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.xlythe.dao;
+
+import android.util.Log;
+
+import java.io.Serializable;
+import java.util.List;
+
+import static com.xlythe.dao.Model.TAG;
+
+/**
+ * A page of rows from {@link Model.Query#page(int)}, and the token to fetch the page after it.
+ */
+public class Page<T extends BaseModel<T>> {
+    private final List<T> mItems;
+    private final Token mNextToken;
+
+    Page(List<T> items, Token nextToken) {
+        mItems = items;
+        mNextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    /**
+     * Returns the token to pass to {@link Model.Query#after(Token)} for the next page, or null if
+     * this was the last page.
+     */
+    public Token getNextToken() {
+        return mNextToken;
+    }
+
+    public boolean hasNext() {
+        return mNextToken != null;
+    }
+
+    /**
+     * Creates a page from the rows of a query that asked for pageSize rows. A short page is the last.
+     */
+    static <T extends BaseModel<T>> Page<T> create(List<T> items, int pageSize, String column, boolean descending) {
+        if (items.isEmpty() || items.size() < pageSize) {
+            return new Page<>(items, null);
+        }
+
+        T last = items.get(items.size() - 1);
+        Object value = null;
+        try {
+            value = last.getField(column).get(last);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            Log.e(TAG, "Failed to read field " + column, e);
+        }
+        return new Page<>(items, new Token(column, value, last._id, descending));
+    }
+
+    /**
+     * The position of the last row of a page: its value for the ordered column, and its _id to
+     * break ties between rows that share that value.
+     */
+    public static final class Token implements Serializable {
+        private final String mColumn;
+        private final Object mValue;
+        private final long mId;
+        private final boolean mDescending;
+
+        public Token(String column, Object value, long id, boolean descending) {
+            mColumn = column;
+            mValue = value;
+            mId = id;
+            mDescending = descending;
+        }
+
+        public String getColumn() {
+            return mColumn;
+        }
+
+        public Object getValue() {
+            return mValue;
+        }
+
+        public long getId() {
+            return mId;
+        }
+
+        public boolean isDescending() {
+            return mDescending;
+        }
+    }
+}
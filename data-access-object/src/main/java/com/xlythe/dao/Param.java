@@ -4,21 +4,48 @@ import android.util.Base64;
 
 import androidx.annotation.NonNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public final class Param {
+    // SQLite limits a statement to 999 bound arguments (before 3.32). Past that, IN lists are split.
+    static final int MAX_BOUND_ARGUMENTS = 999;
+
+    private static final String EQUALS = "=";
+    private static final String IN = "IN";
+    private static final String IS_NULL = "IS NULL";
+    private static final String IS_NOT_NULL = "IS NOT NULL";
+    private static final String AND = "AND";
+    private static final String OR = "OR";
+
     private final String key;
+    private final String operator;
     private final String value;
     private final String parameterizedValue;
     private final Object unformattedValue;
     private final boolean isPrimaryKey;
 
+    // The values of an IN, or the members of an AND/OR group
+    private final Param[] children;
+
     public Param(String key, Object value) {
         this(key, value, /*isPrimaryKey=*/false);
     }
 
     public Param(String key, Object value, boolean isPrimaryKey) {
+        this(key, EQUALS, value, isPrimaryKey, null);
+    }
+
+    private Param(String key, String operator, Object value, boolean isPrimaryKey, Param[] children) {
         this.key = key;
+        this.operator = operator;
         this.unformattedValue = value;
         this.isPrimaryKey = isPrimaryKey;
+        this.children = children;
 
         if (value == null) {
             this.value = "NULL";
@@ -38,6 +65,75 @@ public final class Param {
         }
     }
 
+    public static Param notEqualTo(String key, Object value) {
+        return new Param(key, "!=", value, /*isPrimaryKey=*/false, null);
+    }
+
+    public static Param lessThan(String key, Object value) {
+        return new Param(key, "<", value, /*isPrimaryKey=*/false, null);
+    }
+
+    public static Param lessThanOrEqualTo(String key, Object value) {
+        return new Param(key, "<=", value, /*isPrimaryKey=*/false, null);
+    }
+
+    public static Param greaterThan(String key, Object value) {
+        return new Param(key, ">", value, /*isPrimaryKey=*/false, null);
+    }
+
+    public static Param greaterThanOrEqualTo(String key, Object value) {
+        return new Param(key, ">=", value, /*isPrimaryKey=*/false, null);
+    }
+
+    /**
+     * Matches values against a LIKE pattern, where % matches any run of characters and _ matches
+     * any single character
+     */
+    public static Param like(String key, String pattern) {
+        return new Param(key, "LIKE", pattern, /*isPrimaryKey=*/false, null);
+    }
+
+    public static Param isNull(String key) {
+        return new Param(key, IS_NULL, null, /*isPrimaryKey=*/false, null);
+    }
+
+    public static Param isNotNull(String key) {
+        return new Param(key, IS_NOT_NULL, null, /*isPrimaryKey=*/false, null);
+    }
+
+    /**
+     * Matches any of the values. If a query would bind more than {@link #MAX_BOUND_ARGUMENTS}, its
+     * lists are split across several statements, so that they don't run into SQLite's limit. Only
+     * lists passed straight to where() are split, not lists inside of {@link #or(Param...)} or
+     * {@link #and(Param...)}.
+     */
+    public static Param in(String key, Object... values) {
+        Param[] children = new Param[values.length];
+        for (int i = 0; i < values.length; i++) {
+            children[i] = new Param(key, values[i]);
+        }
+        return new Param(key, IN, null, /*isPrimaryKey=*/false, children);
+    }
+
+    public static Param in(String key, Collection<?> values) {
+        return in(key, values.toArray());
+    }
+
+    /**
+     * Matches if any of the params match
+     */
+    public static Param or(Param... params) {
+        return new Param(null, OR, null, /*isPrimaryKey=*/false, params);
+    }
+
+    /**
+     * Matches if all of the params match. Only needed inside of {@link #or(Param...)}, since
+     * where() clauses are already joined with AND.
+     */
+    public static Param and(Param... params) {
+        return new Param(null, AND, null, /*isPrimaryKey=*/false, params);
+    }
+
     public String getKey() {
         return key;
     }
@@ -58,9 +154,169 @@ public final class Param {
         return isPrimaryKey;
     }
 
+    /**
+     * Returns true if this is a plain key = value param
+     */
+    boolean isEquality() {
+        return EQUALS.equals(operator);
+    }
+
+    /**
+     * Returns true if this compares the key against a single bound value (eg. key < ?)
+     */
+    boolean isComparison() {
+        return children == null && !IS_NULL.equals(operator) && !IS_NOT_NULL.equals(operator);
+    }
+
+    /**
+     * Returns a param with the same key and operator, but a new value. Only valid for comparisons.
+     */
+    Param withValue(Object value) {
+        return new Param(key, operator, value, isPrimaryKey, null);
+    }
+
+    boolean isIn() {
+        return IN.equals(operator);
+    }
+
+    /**
+     * Splits an IN list into lists of at most size values each. Duplicate and null values are
+     * dropped, so that no value is in more than one list.
+     */
+    Param[] split(int size) {
+        Map<String, Param> values = new LinkedHashMap<>();
+        for (Param child : children) {
+            String value = toComparable(child.unformattedValue);
+            if (value == null) {
+                continue;
+            }
+            // Blobs never equal text, even when the text is their Base64
+            value = (child.unformattedValue instanceof byte[] ? "blob:" : "value:") + value;
+            if (!values.containsKey(value)) {
+                values.put(value, child);
+            }
+        }
+        List<Param> unique = new ArrayList<>(values.values());
+        int count = Math.max(1, (unique.size() + size - 1) / size);
+        Param[] lists = new Param[count];
+        for (int i = 0; i < count; i++) {
+            List<Param> list = unique.subList(i * size, Math.min((i + 1) * size, unique.size()));
+            lists[i] = new Param(key, IN, null, isPrimaryKey, list.toArray(new Param[0]));
+        }
+        return lists;
+    }
+
+    /**
+     * Returns the number of values in an IN list
+     */
+    int size() {
+        return children.length;
+    }
+
+    /**
+     * Returns the value in a form where values that SQLite considers equal are equal, or null if
+     * the value is null. Like SQLite, numbers compare by value, so 2, 2L and 2.0 are the same.
+     * Anything else is kept as it would be bound.
+     */
+    static String toComparable(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Boolean) {
+            value = (Boolean) value ? 1L : 0L;
+        }
+        if (value instanceof Number) {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return Long.toString(((Number) value).longValue());
+            }
+            double number = ((Number) value).doubleValue();
+            if (number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE) {
+                return Long.toString((long) number);
+            }
+            return Double.toString(number);
+        }
+        return new Param(null, value).getParameterizedValue();
+    }
+
+    /**
+     * Returns the number of arguments this param binds
+     */
+    int countArguments() {
+        if (AND.equals(operator) || OR.equals(operator)) {
+            int count = 0;
+            for (Param child : children) {
+                count += child.countArguments();
+            }
+            return count;
+        } else if (IN.equals(operator)) {
+            return children.length;
+        }
+        return isComparison() ? 1 : 0;
+    }
+
+    /**
+     * Writes this param as a SQL expression, with a ? for every argument from
+     * {@link #collectArguments(List)}
+     */
+    void appendSql(StringBuilder builder) {
+        if (AND.equals(operator) || OR.equals(operator)) {
+            if (children.length == 0) {
+                // An empty AND matches everything, and an empty OR matches nothing
+                builder.append(AND.equals(operator) ? "1" : "0");
+                return;
+            }
+            builder.append("(");
+            for (int i = 0; i < children.length; i++) {
+                if (i > 0) {
+                    builder.append(" ").append(operator).append(" ");
+                }
+                children[i].appendSql(builder);
+            }
+            builder.append(")");
+        } else if (IN.equals(operator)) {
+            if (children.length == 0) {
+                builder.append("0");
+                return;
+            }
+            builder.append(key).append(" IN (");
+            for (int i = 0; i < children.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append("?");
+            }
+            builder.append(")");
+        } else if (IS_NULL.equals(operator) || IS_NOT_NULL.equals(operator)) {
+            builder.append(key).append(" ").append(operator);
+        } else {
+            builder.append(key).append(" ").append(operator).append(" ?");
+        }
+    }
+
+    /**
+     * Adds the params whose values are bound to the ?s in {@link #appendSql(StringBuilder)}, in order
+     */
+    void collectArguments(List<Param> arguments) {
+        if (AND.equals(operator) || OR.equals(operator)) {
+            for (Param child : children) {
+                child.collectArguments(arguments);
+            }
+        } else if (IN.equals(operator)) {
+            arguments.addAll(Arrays.asList(children));
+        } else if (isComparison()) {
+            arguments.add(this);
+        }
+    }
+
     @NonNull
     @Override
     public String toString() {
+        if (children != null) {
+            return (key == null ? "" : key + ":") + operator + Arrays.toString(children);
+        }
+        if (!isEquality()) {
+            return key + ":" + operator + " " + value;
+        }
         return key + ":" + value;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.xlythe.dao.Util.newInstance;
+
+/**
+ * Remembers the results of recent queries, keyed by the model and the query's params, columns,
+ * order and limit, so that running the same query again skips SQLite. Any write to a model's
+ * table drops every result for that model. Enabled per model with {@link Database#cacheQueries()},
+ * or per query with {@link Model.Query#cached()}.
+ *
+ * The cache is bounded by the total number of rows it holds. Rows are copied into the cache, and
+ * every hit returns new copies of them, so changing a returned model doesn't change what the next
+ * query returns.
+ */
+public final class QueryCache {
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, /*accessOrder=*/true);
+
+    // The keys of each model's results, so that they can be dropped when the model's table changes
+    private static final Map<Class<?>, Set<String>> KEYS = new HashMap<>();
+
+    // Bumped by every write, so that results read before the write aren't cached after it
+    private static final Map<Class<?>, Long> GENERATIONS = new HashMap<>();
+
+    private static int sMaxSize = DEFAULT_MAX_SIZE;
+    private static int sSize;
+    private static int sHitCount;
+    private static int sMissCount;
+    private static int sEvictionCount;
+
+    private QueryCache() {}
+
+    /**
+     * Sets the total number of rows to keep across every cached result. A result counts as one row
+     * more than it holds, so that empty results have a cost too. 0 disables the cache.
+     */
+    public static synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Max size must be non-negative");
+        }
+        sMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public static synchronized int maxSize() {
+        return sMaxSize;
+    }
+
+    public static synchronized int size() {
+        return sSize;
+    }
+
+    public static synchronized int hitCount() {
+        return sHitCount;
+    }
+
+    public static synchronized int missCount() {
+        return sMissCount;
+    }
+
+    public static synchronized int evictionCount() {
+        return sEvictionCount;
+    }
+
+    public static synchronized void clear() {
+        for (Class<?> clazz : new ArrayList<>(KEYS.keySet())) {
+            invalidate(clazz);
+        }
+    }
+
+    /**
+     * Returns a key that's equal for queries that return the same rows
+     *
+     * @param operation What's being read, eg. "count".
+     * @param columns The columns being read, or null for every column.
+     * @param limit The SQL limit clause, or null for every row.
+     */
+    static String createKey(Class<?> clazz, String operation, String[] columns, String orderBy, String limit, Param... params) {
+        StringBuilder builder = new StringBuilder(clazz.getName()).append('|').append(operation);
+        builder.append('|').append(columns == null ? "*" : Arrays.toString(columns));
+        builder.append('|').append(orderBy).append('|').append(limit);
+        for (Param param : params) {
+            builder.append('|');
+            param.appendSql(builder);
+        }
+
+        // Values are length prefixed, so that no value can be mistaken for a separator
+        for (Param argument : ModelDataSource.getArguments(params)) {
+            String value = argument.getParameterizedValue();
+            builder.append('|');
+            if (value == null) {
+                builder.append("NULL");
+            } else {
+                builder.append(value.length()).append(':').append(value);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the cached result for the key, or null if there isn't one
+     */
+    static synchronized Entry get(String key) {
+        Entry entry = ENTRIES.get(key);
+        if (entry == null) {
+            sMissCount++;
+        } else {
+            sHitCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns a marker to pass to {@link #put(Context, Class, String, Object, long)}, taken before
+     * the result is read
+     */
+    static synchronized long getGeneration(Class<?> clazz) {
+        Long generation = GENERATIONS.get(clazz);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * Caches the result, unless the model's table was written to since the generation was taken
+     */
+    static synchronized void put(Context context, Class<?> clazz, String key, Object value, long generation) {
+        if (getGeneration(clazz) != generation) {
+            return;
+        }
+        Entry entry = new Entry(context, clazz, value);
+        if (entry.mSize > sMaxSize) {
+            return;
+        }
+
+        remove(key);
+        ENTRIES.put(key, entry);
+        sSize += entry.mSize;
+        Set<String> keys = KEYS.get(clazz);
+        if (keys == null) {
+            keys = new HashSet<>();
+            KEYS.put(clazz, keys);
+        }
+        keys.add(key);
+        trimToSize(sMaxSize);
+    }
+
+    /**
+     * Drops every result for the model, because its table has been written to
+     */
+    static synchronized void invalidate(Class<?> clazz) {
+        GENERATIONS.put(clazz, getGeneration(clazz) + 1);
+        Set<String> keys = KEYS.remove(clazz);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Entry entry = ENTRIES.remove(key);
+            if (entry != null) {
+                sSize -= entry.mSize;
+            }
+        }
+    }
+
+    private static void remove(String key) {
+        Entry entry = ENTRIES.remove(key);
+        if (entry == null) {
+            return;
+        }
+        sSize -= entry.mSize;
+        Set<String> keys = KEYS.get(entry.mClass);
+        if (keys != null) {
+            keys.remove(key);
+        }
+    }
+
+    private static void trimToSize(int maxSize) {
+        Iterator<Map.Entry<String, Entry>> iterator = ENTRIES.entrySet().iterator();
+        while (sSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            sSize -= eldest.getValue().mSize;
+            Set<String> keys = KEYS.get(eldest.getValue().mClass);
+            if (keys != null) {
+                keys.remove(eldest.getKey());
+            }
+            sEvictionCount++;
+        }
+    }
+
+    static final class Entry {
+        private final Class<?> mClass;
+        private final Object mValue;
+        private final int mSize;
+
+        private Entry(Context context, Class<?> clazz, Object value) {
+            mClass = clazz;
+            // The cache outlives the caller, so its copies hold on to the application instead
+            value = copy(value, context.getApplicationContext());
+            mValue = value instanceof List ? Collections.unmodifiableList((List<?>) value) : value;
+            mSize = value instanceof List ? ((List<?>) value).size() + 1 : 1;
+        }
+
+        /**
+         * Returns a copy of the cached result, with any models created for the given context
+         */
+        @SuppressWarnings("unchecked")
+        <R> R getValue(Context context) {
+            return (R) copy(mValue, context);
+        }
+
+        // Lists and models are copied in and out, so that callers can't change the cached result
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Object copy(Object value, Context context) {
+            if (value instanceof List) {
+                List<Object> copies = new ArrayList<>(((List<?>) value).size());
+                for (Object item : (List<?>) value) {
+                    copies.add(copy(item, context));
+                }
+                return copies;
+            } else if (value instanceof BaseModel) {
+                BaseModel model = (BaseModel) value;
+                return Transcriber.copy(model, newInstance(model.getModelInfo().getModelClass(), context));
+            }
+            return value;
+        }
+    }
+}
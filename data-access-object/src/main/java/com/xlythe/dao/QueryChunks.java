@@ -0,0 +1,269 @@
+package com.xlythe.dao;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits queries that would bind more than {@link Param#MAX_BOUND_ARGUMENTS} into several
+ * statements, and merges their results.
+ *
+ * Only IN lists passed straight to where() are split. Every row has a single value for the list's
+ * column, so it matches at most one of the statements, and their results can simply be added up.
+ * Rows from several statements are merged in memory, which means they can only be ordered by
+ * plain columns (eg. "title ASC, timestamp DESC").
+ */
+final class QueryChunks {
+    private QueryChunks() {}
+
+    /**
+     * Splits the params into groups that each bind at most {@link Param#MAX_BOUND_ARGUMENTS}, by
+     * splitting their longest IN lists. Returns the params as the only group if they already fit,
+     * or if there's nothing left to split.
+     *
+     * @param bound The number of arguments bound ahead of the params, eg. the values of an UPDATE.
+     */
+    static List<Param[]> split(int bound, Param... params) {
+        List<Param[]> chunks = new ArrayList<>();
+        split(bound, params, chunks);
+        return chunks;
+    }
+
+    private static void split(int bound, Param[] params, List<Param[]> chunks) {
+        int count = bound;
+        int largest = -1;
+        for (int i = 0; i < params.length; i++) {
+            count += params[i].countArguments();
+            if (params[i].isIn() && (largest < 0 || params[i].size() > params[largest].size())) {
+                largest = i;
+            }
+        }
+        if (count <= Param.MAX_BOUND_ARGUMENTS || largest < 0 || params[largest].size() <= 1) {
+            chunks.add(params);
+            return;
+        }
+
+        // Fill each statement up with the largest list. If the other arguments don't leave room
+        // for it, halve it and split the other lists too.
+        int others = count - params[largest].size();
+        int size = others < Param.MAX_BOUND_ARGUMENTS
+                ? Param.MAX_BOUND_ARGUMENTS - others
+                : (params[largest].size() + 1) / 2;
+        for (Param list : params[largest].split(size)) {
+            Param[] chunk = params.clone();
+            chunk[largest] = list;
+            split(bound, chunk, chunks);
+        }
+    }
+
+    /**
+     * Returns the limit to run each statement with, so that the merged rows can still be cut down
+     * to the original limit
+     */
+    static String getChunkLimit(String limit) {
+        int[] bounds = parseLimit(limit);
+        return bounds[1] < 0 ? null : Long.toString((long) bounds[0] + bounds[1]);
+    }
+
+    /**
+     * Adds any columns that the rows are ordered by, but that aren't selected, to the selection
+     */
+    static String[] withOrderColumns(String[] selection, String orderBy) {
+        List<String> names = new ArrayList<>();
+        for (String column : selection) {
+            names.add(getName(column));
+        }
+        List<String> columns = new ArrayList<>(Arrays.asList(selection));
+        for (String[] term : parseOrderBy(orderBy)) {
+            if (!names.contains(term[0])) {
+                names.add(term[0]);
+                columns.add(term[0]);
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    /**
+     * Reads every row of the cursors into a single cursor, ordered and limited like a single
+     * statement would be. The cursors are closed.
+     *
+     * @param limit The SQL limit clause (eg. "10" or "20,10"), or null for every row.
+     */
+    static Cursor merge(List<Cursor> cursors, String orderBy, String limit) {
+        String[] columns = cursors.get(0).getColumnNames();
+        List<Object[]> rows = new ArrayList<>();
+        for (Cursor cursor : cursors) {
+            try {
+                while (cursor.moveToNext()) {
+                    Object[] row = new Object[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        row[i] = getValue(cursor, i);
+                    }
+                    rows.add(row);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        Collections.sort(rows, getComparator(columns, orderBy));
+        int[] bounds = parseLimit(limit);
+        int offset = Math.min(bounds[0], rows.size());
+        int end = bounds[1] < 0 ? rows.size() : (int) Math.min((long) offset + bounds[1], rows.size());
+
+        MatrixCursor merged = new MatrixCursor(columns, end - offset);
+        for (Object[] row : rows.subList(offset, end)) {
+            merged.addRow(row);
+        }
+        return merged;
+    }
+
+    /**
+     * Orders values of the column the way that orderBy would, for results that only hold that one
+     * column (eg. distinct values, or the groups of a GROUP BY)
+     */
+    static void sort(List<String> values, String column, String orderBy) {
+        final boolean[] descending = { false };
+        for (String[] term : parseOrderBy(orderBy)) {
+            if (!term[0].equals(column)) {
+                throw new IllegalArgumentException("Queries split across statements can only be ordered by " + column);
+            }
+            descending[0] = term[1].equals("DESC");
+        }
+        if (orderBy == null || orderBy.trim().isEmpty()) {
+            return;
+        }
+        Collections.sort(values, (a, b) -> {
+            int result = TableMirror.compare(toValue(a), toValue(b));
+            return descending[0] ? -result : result;
+        });
+    }
+
+    /**
+     * Combines the results of an aggregate function (eg. "MAX(timestamp)") from several statements
+     *
+     * @param name The function's name, eg. "MAX".
+     */
+    static String combine(String name, String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        switch (name) {
+            case "COUNT":
+                return Long.toString(Long.parseLong(a) + Long.parseLong(b));
+            case "TOTAL":
+                return Double.toString(Double.parseDouble(a) + Double.parseDouble(b));
+            case "MIN":
+                return TableMirror.compare(toValue(a), toValue(b)) <= 0 ? a : b;
+            case "MAX":
+                return TableMirror.compare(toValue(a), toValue(b)) >= 0 ? a : b;
+            default:
+                throw new IllegalArgumentException("Can't combine " + name + " across statements");
+        }
+    }
+
+    /**
+     * Returns the name of an aggregate function (eg. "MAX" for "MAX(timestamp)")
+     */
+    static String getFunctionName(String function) {
+        int index = function.indexOf('(');
+        return (index < 0 ? function : function.substring(0, index)).trim().toUpperCase(Locale.US);
+    }
+
+    /**
+     * Returns the argument of an aggregate function (eg. "timestamp" for "MAX(timestamp)")
+     */
+    static String getFunctionArgument(String function) {
+        return function.substring(function.indexOf('(') + 1, function.lastIndexOf(')')).trim();
+    }
+
+    // Numbers are read back as strings by the aggregate queries, but should compare as numbers
+    private static Object toValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            // Not an integer
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static Object getValue(Cursor cursor, int index) {
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(index);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(index);
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(index);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(index);
+            default:
+                return null;
+        }
+    }
+
+    private static Comparator<Object[]> getComparator(String[] columns, String orderBy) {
+        List<String[]> terms = parseOrderBy(orderBy);
+        final int[] indices = new int[terms.size()];
+        final boolean[] descending = new boolean[terms.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = Arrays.asList(columns).indexOf(terms.get(i)[0]);
+            descending[i] = terms.get(i)[1].equals("DESC");
+        }
+        return (a, b) -> {
+            for (int i = 0; i < indices.length; i++) {
+                int result = TableMirror.compare(a[indices[i]], b[indices[i]]);
+                if (result != 0) {
+                    return descending[i] ? -result : result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Parses an ORDER BY clause of plain columns into {column, "ASC" or "DESC"} pairs
+     */
+    private static List<String[]> parseOrderBy(String orderBy) {
+        List<String[]> terms = new ArrayList<>();
+        if (orderBy == null || orderBy.trim().isEmpty()) {
+            return terms;
+        }
+        for (String term : orderBy.split(",")) {
+            String[] parts = term.trim().split("\\s+");
+            String direction = parts.length == 2 ? parts[1].toUpperCase(Locale.US) : "ASC";
+            if (parts.length > 2 || !(direction.equals("ASC") || direction.equals("DESC"))) {
+                throw new IllegalArgumentException("Queries split across statements can only be ordered by plain columns, but got " + orderBy);
+            }
+            terms.add(new String[] { parts[0], direction });
+        }
+        return terms;
+    }
+
+    // The name a selected column is read back as (eg. _id for "id AS _id")
+    private static String getName(String column) {
+        String[] parts = column.split("\\s+(?i)AS\\s+");
+        return parts[parts.length - 1].trim();
+    }
+
+    private static int[] parseLimit(String limit) {
+        int[] bounds = TableMirror.parseLimit(limit);
+        if (bounds == null) {
+            throw new IllegalArgumentException("Invalid limit " + limit);
+        }
+        return bounds;
+    }
+}
@@ -10,12 +10,15 @@ import com.xlythe.dao.remote.DefaultServer;
 import com.xlythe.dao.remote.JSONResult;
 import com.xlythe.dao.remote.Server;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import static com.xlythe.dao.Util.newInstance;
 
@@ -26,6 +29,8 @@ import static com.xlythe.dao.Util.newInstance;
  */
 public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
     private static transient Server sServer;
+    private static Executor sExecutor;
+    private static Executor sCallbackExecutor;
 
     private static Server getServer(Context context) {
         if (sServer == null) {
@@ -38,6 +43,50 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
         sServer = server;
     }
 
+    private static Executor getExecutor() {
+        synchronized (RemoteModel.class) {
+            if (sExecutor == null) {
+                // A single thread, so that cache writes never contend with each other for the database
+                sExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "DAO-RemoteModel");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return sExecutor;
+        }
+    }
+
+    /**
+     * Sets the executor that server responses are parsed and cached on. Defaults to a single
+     * background thread.
+     */
+    public static void setExecutor(Executor executor) {
+        synchronized (RemoteModel.class) {
+            sExecutor = executor;
+        }
+    }
+
+    private static Executor getCallbackExecutor() {
+        synchronized (RemoteModel.class) {
+            if (sCallbackExecutor == null) {
+                Handler handler = new Handler(Looper.getMainLooper());
+                sCallbackExecutor = handler::post;
+            }
+            return sCallbackExecutor;
+        }
+    }
+
+    /**
+     * Sets the executor that callbacks (and observers of models saved by a callback) are run on.
+     * Defaults to the main thread.
+     */
+    public static void setCallbackExecutor(Executor executor) {
+        synchronized (RemoteModel.class) {
+            sCallbackExecutor = executor;
+        }
+    }
+
     private String mUrl;
 
     public RemoteModel(Context context) {
@@ -53,6 +102,14 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
         return (T) this;
     }
 
+    /**
+     * Sends the model to the server, and then saves the server's copy of it to the local cache. The
+     * cache is written on the executor from {@link #setExecutor(Executor)}, straight through to the
+     * database, so overrides of {@link #save()} are not called. The server's copy is only copied
+     * into this model on the callback executor, right before observers and the callback are run,
+     * so this model isn't written to from another thread. If the response can't be cached, the
+     * callback's onFailure is called and this model is left as it was.
+     */
     protected void save(final Callback<T> callback) {
         if (mUrl == null) {
             throw new IllegalStateException("No url set");
@@ -62,22 +119,38 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             return;
         }
 
-        Handler handler = new Handler(Looper.getMainLooper());
+        // The response is applied to a copy, since this model belongs to the caller's thread
+        final T copy = Transcriber.copy(getModel(), newInstance(getModelClass(), getContext()));
         getServer(getContext()).post(mUrl, Transcriber.getJSONObject(getModel()), new Callback<JSONResult>() {
             @Override
             public void onSuccess(JSONResult response) {
-                handler.post(() -> {
-                    final T model = getModel();
-                    // Add all the items from the server to the local cache db
-                    Transcriber.inflate(model, response.asJSONObject());
-                    model.save();
-                    callback.onSuccess(model);
+                getExecutor().execute(() -> {
+                    try {
+                        // Add all the items from the server to the local cache db
+                        Transcriber.inflate(copy, response.asJSONObject());
+                        copy.open();
+                        try {
+                            copy.getDataSource().save(copy);
+                        } finally {
+                            copy.close();
+                        }
+                    } catch (RuntimeException e) {
+                        onFailure(e);
+                        return;
+                    }
+
+                    // Observers are notified alongside the callback, since they're likely to touch the UI too
+                    getCallbackExecutor().execute(() -> {
+                        T model = Transcriber.copy(copy, getModel());
+                        notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.SAVE, model));
+                        callback.onSuccess(model);
+                    });
                 });
             }
 
             @Override
             public void onFailure(Throwable throwable) {
-                handler.post(() -> {
+                getCallbackExecutor().execute(() -> {
                     Log.e(TAG, "Failed: ", throwable);
                     callback.onFailure(throwable);
                 });
@@ -85,6 +158,11 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
         });
     }
 
+    /**
+     * Deletes the model from the server, and then from the local cache. The cache is written on the
+     * executor from {@link #setExecutor(Executor)}, straight through to the database, so overrides of
+     * {@link #delete()} are not called. Observers and the callback are run on the callback executor.
+     */
     protected void delete(final Callback<Void> callback) {
         if (mUrl == null) {
             throw new IllegalStateException("No url set");
@@ -94,24 +172,30 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             return;
         }
 
-        Handler handler = new Handler(Looper.getMainLooper());
         getServer(getContext()).delete(mUrl + "/" + getUniqueKey(), new Callback<JSONResult>() {
             @Override
             public void onSuccess(JSONResult response) {
-                handler.post(() -> {
+                getExecutor().execute(() -> {
                     final T model = getModel();
+                    model.open();
                     try {
-                        model.delete();
+                        model.getDataSource().delete(model);
                     } catch (Exception e) {
                         Log.e(TAG, "Failed to delete cache", e);
+                    } finally {
+                        model.close();
                     }
-                    callback.onSuccess(null);
+
+                    getCallbackExecutor().execute(() -> {
+                        notifyDataSetChanged(getModelClass(), ChangeSet.of(ChangeSet.Operation.DELETE, model));
+                        callback.onSuccess(null);
+                    });
                 });
             }
 
             @Override
             public void onFailure(Throwable throwable) {
-                handler.post(() -> {
+                getCallbackExecutor().execute(() -> {
                     Log.e(TAG, "Failed: ", throwable);
                     callback.onFailure(throwable);
                 });
@@ -121,7 +205,7 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
 
     public static class Query<Q extends RemoteModel<Q>> extends Model.Query<Q> {
         private String mUrl;
-        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private Executor mCallbackExecutor;
 
         public Query(Class<Q> clazz, Context context) {
             super(clazz, context);
@@ -132,11 +216,30 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             return this;
         }
 
+        /**
+         * Sets the executor that callbacks are run on. Defaults to the one set by
+         * {@link RemoteModel#setCallbackExecutor(Executor)}.
+         */
+        public Query<Q> callbackExecutor(Executor executor) {
+            mCallbackExecutor = executor;
+            return this;
+        }
+
+        private void deliver(Runnable runnable) {
+            (mCallbackExecutor != null ? mCallbackExecutor : getCallbackExecutor()).execute(runnable);
+        }
+
         @Override
         public List<Q> all() {
             return all(null);
         }
 
+        /**
+         * Returns the cached rows, and asks the server for them. The server's models replace the
+         * cached rows that match this query, and are then handed to the callback. Every model in
+         * the response is held in memory until the callback runs, so use
+         * {@link #forEach(Visitor, Callback)} for large responses.
+         */
         public List<Q> all(Callback<List<Q>> callback) {
             final List<Q> cache = super.all();
 
@@ -149,51 +252,66 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             getServer(getContext()).get(mUrl, asJsonObject(), new Callback<JSONResult>() {
                 @Override
                 public void onSuccess(JSONResult response) {
-                    mHandler.post(() -> {
-                        final JSONArray array;
+                    getExecutor().execute(() -> {
+                        final List<Q> list;
                         try {
-                            array = response.asJSONArray();
+                            list = refreshCache(response);
                         } catch (RuntimeException e) {
                             onFailure(e);
                             return;
                         }
 
-                        final Q model = newInstance(getModelClass(), getContext());
-                        try {
-                            model.open();
+                        // Give the callback the new data
+                        deliver(() -> callback.onSuccess(list));
+                    });
+                }
 
-                            // Clean up the old cache
-                            model.getDataSource().delete(getParams());
+                @Override
+                public void onFailure(Throwable throwable) {
+                    deliver(() -> {
+                        Log.e(TAG, "Failed: ", throwable);
+                        callback.onFailure(throwable);
+                    });
+                }
+            });
 
-                            // Add all the items from the server to the local cache db
-                            List<Q> list = new ArrayList<>(array.length());
-                            for (int i = 0; i < array.length(); i++) {
-                                Q instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), array.getJSONObject(i));
-                                list.add(instance);
-                                model.getDataSource().save(instance);
-                            }
+            return cache;
+        }
 
-                            // Give the callback the new data
-                            callback.onSuccess(list);
-                        } catch (JSONException e) {
-                            Log.e(TAG, "Exception parsing fields from JSON Object", e);
-                            callback.onFailure(e);
-                        } finally {
-                            model.close();
+        /**
+         * Asks the server for every matching model, and replaces the cached rows that match this
+         * query with them. Once the cache has been refreshed, the visitor is run over the cached
+         * rows on the executor from {@link #setExecutor(Executor)}, and then the callback is run.
+         *
+         * Unlike {@link #all(Callback)}, only one model is held in memory at a time, no matter how
+         * large the response is. Like {@link Model.Query#forEach(Visitor)}, the instance passed to
+         * the visitor is reused for the next row.
+         */
+        public void forEach(final Visitor<Q> visitor, final Callback<Void> callback) {
+            getServer(getContext()).get(mUrl, asJsonObject(), new Callback<JSONResult>() {
+                @Override
+                public void onSuccess(JSONResult response) {
+                    getExecutor().execute(() -> {
+                        try {
+                            refreshCache(response, null);
+                            forEach(visitor);
+                        } catch (RuntimeException e) {
+                            onFailure(e);
+                            return;
                         }
+
+                        deliver(() -> callback.onSuccess(null));
                     });
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    mHandler.post(() -> {
+                    deliver(() -> {
                         Log.e(TAG, "Failed: ", throwable);
                         callback.onFailure(throwable);
                     });
                 }
             });
-
-            return cache;
         }
 
         @Override
@@ -220,44 +338,23 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             getServer(getContext()).get(mUrl, params, new Callback<JSONResult>() {
                 @Override
                 public void onSuccess(JSONResult response) {
-                    mHandler.post(() -> {
-                        final JSONArray array;
+                    getExecutor().execute(() -> {
+                        final List<Q> list;
                         try {
-                            array = response.asJSONArray();
+                            list = refreshCache(response);
                         } catch (RuntimeException e) {
                             onFailure(e);
                             return;
                         }
 
-                        final Q model = newInstance(getModelClass(), getContext());
-                        try {
-                            model.open();
-
-                            // Clean up the old cache
-                            model.getDataSource().delete(getParams());
-
-                            // Add all the items from the server to the local cache db
-                            List<Q> list = new ArrayList<>(array.length());
-                            for (int i = 0; i < array.length(); i++) {
-                                Q instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), array.getJSONObject(i));
-                                list.add(instance);
-                                model.getDataSource().save(instance);
-                            }
-
-                            // Give the callback the new data
-                            callback.onSuccess(list);
-                        } catch (JSONException e) {
-                            Log.e(TAG, "Exception parsing fields from JSON Object", e);
-                            callback.onFailure(e);
-                        } finally {
-                            model.close();
-                        }
+                        // Give the callback the new data
+                        deliver(() -> callback.onSuccess(list));
                     });
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    mHandler.post(() -> {
+                    deliver(() -> {
                         Log.e(TAG, "Failed: ", throwable);
                         callback.onFailure(throwable);
                     });
@@ -296,44 +393,94 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             getServer(getContext()).get(mUrl, params, new Callback<JSONResult>() {
                 @Override
                 public void onSuccess(JSONResult response) {
-                    mHandler.post(() -> {
-                        final JSONArray array;
+                    getExecutor().execute(() -> {
+                        final List<Q> list;
                         try {
-                            array = response.asJSONArray();
+                            list = refreshCache(response);
                         } catch (RuntimeException e) {
                             onFailure(e);
                             return;
                         }
 
-                        final Q model = newInstance(getModelClass(), getContext());
-                        try {
-                            model.open();
+                        // Give the callback the new data
+                        deliver(() -> callback.onSuccess(list));
+                    });
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    deliver(() -> {
+                        Log.e(TAG, "Failed: ", throwable);
+                        callback.onFailure(throwable);
+                    });
+                }
+            });
 
-                            // Clean up the old cache
-                            model.getDataSource().delete(getParams());
+            return cache;
+        }
 
-                            // Add all the items from the server to the local cache db
-                            List<Q> list = new ArrayList<>(array.length());
-                            for (int i = 0; i < array.length(); i++) {
-                                Q instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), array.getJSONObject(i));
-                                list.add(instance);
-                                model.getDataSource().save(instance);
-                            }
+        @Override
+        public Page<Q> page(int size) {
+            return page(size, null);
+        }
 
-                            // Give the callback the new data
-                            callback.onSuccess(list);
-                        } catch (JSONException e) {
-                            Log.e(TAG, "Exception parsing fields from JSON Object", e);
-                            callback.onFailure(e);
-                        } finally {
-                            model.close();
+        /**
+         * Returns the cached page, and asks the server for the same page. The server is sent the
+         * page's limit, order_by and order (asc or desc), as well as after if the page continues
+         * from a token. If the model has a single @Unique field, ties are broken by it, and the
+         * token's row's value is sent as after_id. Only the cached rows within the page's range
+         * (from the token to the server's last row) are replaced by the server's.
+         */
+        public Page<Q> page(final int size, Callback<Page<Q>> callback) {
+            final Page<Q> cache = super.page(size);
+
+            // Don't ping the server if a callback wasn't sent
+            if (callback == null) {
+                Log.w(TAG, "No callback set, returning cached data");
+                return cache;
+            }
+
+            // The token holds the row's local _id, which means nothing to the server
+            final Page.Token token = getSeekToken();
+            final String keyColumn = getKeyColumn();
+            final Object tokenKey = token == null || keyColumn == null ? null : getCachedValue(token.getId(), keyColumn);
+
+            JSONObject params = asJsonObject();
+            try {
+                params.put("limit", size);
+                params.put("order_by", getSeekColumn());
+                params.put("order", isSeekDescending() ? "desc" : "asc");
+                if (token != null) {
+                    params.put("after", JSONObject.wrap(token.getValue()));
+                    if (tokenKey != null) {
+                        params.put("after_id", JSONObject.wrap(tokenKey));
+                    }
+                }
+            } catch (JSONException e) {
+                throw new IllegalArgumentException("Invalid page parameters", e);
+            }
+
+            getServer(getContext()).get(mUrl, params, new Callback<JSONResult>() {
+                @Override
+                public void onSuccess(JSONResult response) {
+                    getExecutor().execute(() -> {
+                        final List<Q> list;
+                        try {
+                            list = refreshPage(response, size, token, keyColumn, tokenKey);
+                        } catch (RuntimeException e) {
+                            onFailure(e);
+                            return;
                         }
+
+                        // Give the callback the new data
+                        final Page<Q> page = newPage(list, size);
+                        deliver(() -> callback.onSuccess(page));
                     });
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    mHandler.post(() -> {
+                    deliver(() -> {
                         Log.e(TAG, "Failed: ", throwable);
                         callback.onFailure(throwable);
                     });
@@ -385,37 +532,24 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             getServer(getContext()).get(url, params, new Callback<JSONResult>() {
                 @Override
                 public void onSuccess(JSONResult response) {
-                    mHandler.post(() -> {
-                        final JSONObject object;
+                    getExecutor().execute(() -> {
+                        final Q instance;
                         try {
-                            object = getFirst(response);
+                            instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), getFirst(response));
+                            refreshCache(Collections.singletonList(instance));
                         } catch (RuntimeException e) {
                             onFailure(e);
                             return;
                         }
 
-                        final Q model = newInstance(getModelClass(), getContext());
-                        try {
-                            model.open();
-
-                            // Clean up the old cache
-                            model.getDataSource().delete(getParams());
-
-                            // Add all the items from the server to the local cache db
-                            Q instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), object);
-                            model.getDataSource().save(instance);
-
-                            // Give the callback the new data
-                            callback.onSuccess(instance);
-                        } finally {
-                            model.close();
-                        }
+                        // Give the callback the new data
+                        deliver(() -> callback.onSuccess(instance));
                     });
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    mHandler.post(() -> {
+                    deliver(() -> {
                         Log.e(TAG, "Failed: ", throwable);
                         callback.onFailure(throwable);
                     });
@@ -455,26 +589,30 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             getServer(getContext()).post(mUrl, Transcriber.getJSONObject(cache), new Callback<JSONResult>() {
                 @Override
                 public void onSuccess(JSONResult response) {
-                    mHandler.post(() -> {
-                        final Q model = newInstance(getModelClass(), getContext());
+                    getExecutor().execute(() -> {
+                        final Q instance;
                         try {
-                            model.open();
-
                             // Add all the items from the server to the local cache db
-                            Q instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), response.asJSONObject());
-                            model.getDataSource().save(instance);
-
-                            // Give the callback the new data
-                            callback.onSuccess(instance);
-                        } finally {
-                            model.close();
+                            instance = Transcriber.inflate(newInstance(getModelClass(), getContext()), response.asJSONObject());
+                            final ModelDataSource<Q> dataSource = open();
+                            try {
+                                dataSource.save(instance);
+                            } finally {
+                                dataSource.close();
+                            }
+                        } catch (RuntimeException e) {
+                            onFailure(e);
+                            return;
                         }
+
+                        // Give the callback the new data
+                        deliver(() -> callback.onSuccess(instance));
                     });
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    mHandler.post(() -> {
+                    deliver(() -> {
                         Log.e(TAG, "Failed: ", throwable);
                         callback.onFailure(throwable);
                     });
@@ -484,6 +622,151 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
             return null;
         }
 
+        /**
+         * Streams the models in the response straight into the cache, replacing the rows that match
+         * this query, and returns them
+         */
+        private List<Q> refreshCache(JSONResult response) {
+            List<Q> list = new ArrayList<>();
+            refreshCache(response, list);
+            return list;
+        }
+
+        /**
+         * Streams the models in the response straight into the cache, replacing the rows that match
+         * this query. Only one model's JSON is parsed at a time, and unless the models are collected
+         * into the list, each is dropped once it's been saved. If the response can't be parsed, the
+         * cache is left as it was.
+         *
+         * @param list Where to collect the saved models, or null to drop them.
+         */
+        private void refreshCache(JSONResult response, final List<Q> list) {
+            final JSONModelReader<Q> reader = new JSONModelReader<>(getModelClass(), getContext(), response.newJsonReader());
+            final ModelDataSource<Q> dataSource = open();
+            try {
+                dataSource.runInTransaction(() -> {
+                    // Clean up the old cache
+                    dataSource.delete(getParams());
+
+                    // Add all the items from the server to the local cache db
+                    while (reader.hasNext()) {
+                        Q instance = reader.next();
+                        dataSource.save(instance);
+                        if (list != null) {
+                            list.add(instance);
+                        }
+                    }
+                });
+            } finally {
+                dataSource.close();
+                reader.close();
+            }
+        }
+
+        /**
+         * Swaps the cached rows that match this query for the ones from the server. This happens in a
+         * single transaction, so readers never see a half refreshed cache.
+         */
+        private void refreshCache(List<Q> list) {
+            ModelDataSource<Q> dataSource = open();
+            try {
+                dataSource.replace(list, getParams());
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        /**
+         * Swaps the cached rows within the page's range for the page from the server. The range
+         * starts after the token and ends at the page's last row, ordered by the seek column and
+         * then by the key column. Without a key, ties can't be broken, so the range starts after
+         * every row that shares the token's value and ends after every row that shares the last
+         * row's value. A short page is the last one, so its range runs to the end.
+         */
+        private List<Q> refreshPage(JSONResult response, int size, Page.Token token, String keyColumn, Object tokenKey) {
+            // A page is small, so it's read in full before the cache is touched
+            List<Q> list = new ArrayList<>();
+            JSONModelReader<Q> reader = new JSONModelReader<>(getModelClass(), getContext(), response.newJsonReader());
+            try {
+                while (reader.hasNext()) {
+                    list.add(reader.next());
+                }
+            } finally {
+                reader.close();
+            }
+
+            // Swap the local _id tie breaker for the range's own bounds
+            List<Param> params = new ArrayList<>(Arrays.asList(getParams()));
+            params.remove(getSeekParam());
+            String column = BaseModel._ID.equals(getSeekColumn()) ? ModelInfo.get(getModelClass()).getIdColumn() : getSeekColumn();
+            boolean descending = isSeekDescending();
+            if (token != null) {
+                params.add(after(column, token.getValue(), keyColumn, tokenKey, descending));
+            }
+            if (!list.isEmpty() && list.size() >= size) {
+                Q last = list.get(list.size() - 1);
+                Object lastKey = keyColumn == null ? null : getValue(last, keyColumn);
+                params.add(upTo(column, getValue(last, getSeekColumn()), keyColumn, lastKey, descending));
+            }
+
+            ModelDataSource<Q> dataSource = open();
+            try {
+                dataSource.replace(list, params.toArray(new Param[0]));
+            } finally {
+                dataSource.close();
+            }
+            return list;
+        }
+
+        // Matches the rows after the value (and key, if there is one) in the page's order
+        private static Param after(String column, Object value, String keyColumn, Object key, boolean descending) {
+            Param past = descending ? Param.lessThan(column, value) : Param.greaterThan(column, value);
+            if (key == null) {
+                return past;
+            }
+            return Param.or(past, Param.and(new Param(column, value),
+                    descending ? Param.lessThan(keyColumn, key) : Param.greaterThan(keyColumn, key)));
+        }
+
+        // Matches the rows up to and including the value (and key, if there is one) in the page's order
+        private static Param upTo(String column, Object value, String keyColumn, Object key, boolean descending) {
+            if (key == null) {
+                return descending ? Param.greaterThanOrEqualTo(column, value) : Param.lessThanOrEqualTo(column, value);
+            }
+            Param before = descending ? Param.greaterThan(column, value) : Param.lessThan(column, value);
+            return Param.or(before, Param.and(new Param(column, value),
+                    descending ? Param.greaterThanOrEqualTo(keyColumn, key) : Param.lessThanOrEqualTo(keyColumn, key)));
+        }
+
+        /**
+         * Returns the @Unique column that the server can break ties between pages with, or null if
+         * the model doesn't have exactly one
+         */
+        private String getKeyColumn() {
+            String[] uniqueColumns = ModelInfo.get(getModelClass()).getUniqueColumns();
+            return uniqueColumns.length == 1 ? uniqueColumns[0] : null;
+        }
+
+        // Returns the column's value for the cached row with the given _id, or null if it's not cached
+        private Object getCachedValue(long id, String column) {
+            ModelDataSource<Q> dataSource = open();
+            try {
+                Q row = dataSource.first(null, new Param(ModelInfo.get(getModelClass()).getIdColumn(), id));
+                return row == null ? null : getValue(row, column);
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        private static Object getValue(BaseModel<?> row, String column) {
+            try {
+                return row.getField(column).get(row);
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                Log.e(TAG, "Failed to read field " + column, e);
+                return null;
+            }
+        }
+
         private JSONObject asJsonObject() {
             return asJsonObject(false);
         }
@@ -495,6 +778,11 @@ public abstract class RemoteModel<T extends RemoteModel<T>> extends Model<T> {
                     continue;
                 }
 
+                // The server only understands key = value filters. The rest are applied to the cache.
+                if (!param.isEquality()) {
+                    continue;
+                }
+
                 try {
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
                         params.put(param.getKey(), JSONObject.wrap(param.getUnformattedValue()));
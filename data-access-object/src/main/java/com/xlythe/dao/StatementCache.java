@@ -0,0 +1,71 @@
+package com.xlythe.dao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded pool of compiled statements for a single database connection, keyed by their SQL.
+ *
+ * Statements are handed out exclusively: {@link #acquire(SQLiteDatabase, String)} takes the
+ * statement out of the pool, and {@link #release(String, SQLiteStatement)} puts it back. That way
+ * two threads never bind arguments to the same statement at once. Statements that are released
+ * after their connection was closed are closed instead of being put back.
+ */
+final class StatementCache {
+    private static final int MAX_SIZE = 32;
+
+    private final Map<String, SQLiteStatement> mStatements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, /*accessOrder=*/true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+            if (size() > MAX_SIZE) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // The generation of the connection that each acquired statement was compiled against
+    private final Map<SQLiteStatement, Integer> mAcquired = new IdentityHashMap<>();
+
+    // Incremented whenever the pool is cleared, ie. whenever the connection is closed
+    private int mGeneration;
+
+    synchronized SQLiteStatement acquire(SQLiteDatabase database, String sql) {
+        SQLiteStatement statement = mStatements.remove(sql);
+        if (statement == null) {
+            statement = database.compileStatement(sql);
+        }
+        mAcquired.put(statement, mGeneration);
+        return statement;
+    }
+
+    synchronized void release(String sql, SQLiteStatement statement) {
+        Integer generation = mAcquired.remove(statement);
+        if (generation == null || generation != mGeneration) {
+            statement.close();
+            return;
+        }
+
+        statement.clearBindings();
+        SQLiteStatement existing = mStatements.put(sql, statement);
+        if (existing != null) {
+            existing.close();
+        }
+    }
+
+    /**
+     * Closes every pooled statement. Must be called before the connection is closed.
+     */
+    synchronized void clear() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+        mGeneration++;
+    }
+}
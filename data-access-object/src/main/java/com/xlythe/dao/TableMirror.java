@@ -0,0 +1,442 @@
+package com.xlythe.dao;
+
+import android.util.Log;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.xlythe.dao.BaseModel._ID;
+import static com.xlythe.dao.Model.TAG;
+
+/**
+ * An in-memory copy of a whole table, for small tables that are read far more often than they're
+ * written. Enabled per model with {@link Database#mirror()}.
+ *
+ * The table is loaded the first time it's read. Queries that only match on equality (and sort by
+ * plain columns) are then answered from memory, using a hash index on every @Unique and @Index
+ * column. Anything else falls back to SQLite. Writes are applied once their transaction commits,
+ * and writes that can't be applied row by row drop the copy until it's next read.
+ *
+ * The rows held here are never handed out. {@link ModelDataSource} copies them for the caller.
+ */
+final class TableMirror<T extends BaseModel<T>> {
+    private final ModelInfo<T> mInfo;
+
+    // The columns with a hash index
+    private final Set<String> mIndexedColumns = new LinkedHashSet<>();
+
+    // Every row, ordered by _id, or null if the table hasn't been loaded
+    private TreeMap<Long, T> mRows;
+
+    // Column -> value (as bound by Param) -> the rows with that value
+    private final Map<String, Map<String, Set<T>>> mIndices = new HashMap<>();
+
+    // Bumped whenever the rows change, so that a load that started before the change is dropped
+    private long mGeneration;
+
+    // Writes made inside of a transaction wait here until it commits
+    private final ThreadLocal<Transaction> mTransaction = new ThreadLocal<Transaction>() {
+        @Override
+        protected Transaction initialValue() {
+            return new Transaction();
+        }
+    };
+
+    TableMirror(ModelInfo<T> info) {
+        mInfo = info;
+        mIndexedColumns.add(_ID);
+        mIndexedColumns.addAll(Arrays.asList(info.getUniqueColumns()));
+        for (ModelInfo.IndexInfo index : info.getIndices()) {
+            mIndexedColumns.addAll(Arrays.asList(index.columns));
+        }
+    }
+
+    synchronized boolean isLoaded() {
+        return mRows != null;
+    }
+
+    /**
+     * Returns a marker to pass to {@link #load(List, long)}, taken before the rows are read
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Takes ownership of every row of the table, unless the table changed since the generation
+     * was taken
+     */
+    synchronized void load(List<T> rows, long generation) {
+        if (mGeneration != generation) {
+            return;
+        }
+        mRows = new TreeMap<>();
+        mIndices.clear();
+        for (T row : rows) {
+            add(row);
+        }
+    }
+
+    /**
+     * Returns the matching rows, or null if the query can't be answered from memory
+     *
+     * @param limit The SQL limit clause (eg. "10" or "20,10"), or null for every row.
+     */
+    synchronized List<T> query(String orderBy, String limit, Param... params) {
+        if (mRows == null || !canMatch(params)) {
+            return null;
+        }
+        Comparator<T> comparator = getComparator(orderBy);
+        int[] bounds = parseLimit(limit);
+        if (comparator == null || bounds == null) {
+            return null;
+        }
+
+        List<T> rows = match(params);
+        Collections.sort(rows, comparator);
+        int offset = Math.min(bounds[0], rows.size());
+        int end = bounds[1] < 0 ? rows.size() : (int) Math.min((long) offset + bounds[1], rows.size());
+        return new ArrayList<>(rows.subList(offset, end));
+    }
+
+    /**
+     * Returns the number of matching rows, or -1 if the query can't be answered from memory
+     */
+    synchronized long count(Param... params) {
+        if (mRows == null || !canMatch(params)) {
+            return -1;
+        }
+        return match(params).size();
+    }
+
+    /**
+     * Replaces the rows that match the params, or that share an _id with the new rows, with the
+     * new rows. Used after a write, with the rows read back from the database.
+     */
+    void replace(final Param[] params, final List<T> rows, boolean inTransaction) {
+        stage(() -> {
+            if (!canMatch(params)) {
+                invalidate();
+                return;
+            }
+            for (T row : match(params)) {
+                remove(row);
+            }
+            for (T row : rows) {
+                T existing = mRows.get(row._id);
+                if (existing != null) {
+                    remove(existing);
+                }
+                add(row);
+            }
+        }, inTransaction);
+    }
+
+    /**
+     * Removes the rows that match the params, after they've been deleted
+     */
+    void delete(final Param[] params, boolean inTransaction) {
+        stage(() -> {
+            if (!canMatch(params)) {
+                invalidate();
+                return;
+            }
+            for (T row : match(params)) {
+                remove(row);
+            }
+        }, inTransaction);
+    }
+
+    /**
+     * Drops the copy after a write that can't be applied row by row. It's reloaded when it's next read.
+     */
+    void clear(boolean inTransaction) {
+        stage(this::invalidate, inTransaction);
+    }
+
+    void beginTransaction() {
+        mTransaction.get().depth++;
+    }
+
+    /**
+     * Applies the writes of the transaction once the outermost transaction has committed
+     *
+     * @param inTransaction True if the transaction was nested inside one we don't know about.
+     */
+    void endTransaction(boolean successful, boolean inTransaction) {
+        Transaction transaction = mTransaction.get();
+        transaction.failed |= !successful;
+        if (--transaction.depth > 0) {
+            return;
+        }
+
+        mTransaction.remove();
+        if (transaction.failed) {
+            // Rolled back, so there's nothing to apply
+            return;
+        }
+        synchronized (this) {
+            if (inTransaction && !transaction.changes.isEmpty()) {
+                // The outer transaction may still roll back
+                invalidate();
+                return;
+            }
+            for (Runnable change : transaction.changes) {
+                apply(change);
+            }
+        }
+    }
+
+    private void stage(Runnable change, boolean inTransaction) {
+        Transaction transaction = mTransaction.get();
+        if (transaction.depth > 0) {
+            transaction.changes.add(change);
+            return;
+        }
+        synchronized (this) {
+            if (inTransaction) {
+                // A transaction we don't know about may still roll back
+                invalidate();
+            } else {
+                apply(change);
+            }
+        }
+    }
+
+    private void apply(Runnable change) {
+        mGeneration++;
+        if (mRows != null) {
+            change.run();
+        }
+    }
+
+    private void invalidate() {
+        mGeneration++;
+        mRows = null;
+        mIndices.clear();
+    }
+
+    private void add(T row) {
+        mRows.put(row._id, row);
+        for (String column : mIndexedColumns) {
+            String value = getValue(row, column);
+            if (value == null) {
+                continue;
+            }
+            Map<String, Set<T>> index = mIndices.get(column);
+            if (index == null) {
+                index = new HashMap<>();
+                mIndices.put(column, index);
+            }
+            Set<T> bucket = index.get(value);
+            if (bucket == null) {
+                // Models may override equals(), so rows are compared by identity
+                bucket = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+                index.put(value, bucket);
+            }
+            bucket.add(row);
+        }
+    }
+
+    private void remove(T row) {
+        mRows.remove(row._id);
+        for (String column : mIndexedColumns) {
+            String value = getValue(row, column);
+            Map<String, Set<T>> index = mIndices.get(column);
+            if (value == null || index == null) {
+                continue;
+            }
+            Set<T> bucket = index.get(value);
+            if (bucket != null) {
+                bucket.remove(row);
+                if (bucket.isEmpty()) {
+                    index.remove(value);
+                }
+            }
+        }
+    }
+
+    // Only plain key = value params on known columns, with a value of the column's type, are matched
+    // in memory. Anything else is left to SQLite's type affinity rules.
+    private boolean canMatch(Param... params) {
+        for (Param param : params) {
+            if (!param.isEquality()) {
+                return false;
+            }
+            Field field = getField(param.getKey());
+            if (field == null || !isSameType(field, param.getUnformattedValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameType(Field field, Object value) {
+        if (value == null) {
+            return true;
+        } else if (Util.isString(field)) {
+            return value instanceof String;
+        } else if (Util.isByteArray(field)) {
+            return value instanceof byte[];
+        }
+        return value instanceof Number || value instanceof Boolean;
+    }
+
+    private List<T> match(Param... params) {
+        // Start from the smallest index bucket, if any of the columns are indexed
+        Collection<T> candidates = mRows.values();
+        String[] keys = new String[params.length];
+        for (int i = 0; i < params.length; i++) {
+            Param param = params[i];
+            keys[i] = Param.toComparable(param.getUnformattedValue());
+            if (keys[i] == null) {
+                // Like SQL, key = NULL never matches
+                return new ArrayList<>();
+            }
+            Map<String, Set<T>> index = mIndices.get(param.getKey());
+            if (mIndexedColumns.contains(param.getKey())) {
+                Set<T> bucket = index == null ? null : index.get(keys[i]);
+                if (bucket == null) {
+                    return new ArrayList<>();
+                }
+                if (bucket.size() < candidates.size()) {
+                    candidates = bucket;
+                }
+            }
+        }
+
+        List<T> rows = new ArrayList<>();
+        for (T row : candidates) {
+            boolean matches = true;
+            for (int i = 0; i < params.length; i++) {
+                if (!keys[i].equals(getValue(row, params[i].getKey()))) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a comparator for an ORDER BY clause of plain columns (eg. "title ASC, _id DESC"), or
+     * null if the clause is anything more than that. Ties, and unordered rows, are ordered by _id.
+     */
+    private Comparator<T> getComparator(String orderBy) {
+        final List<Field> fields = new ArrayList<>();
+        final List<Boolean> descending = new ArrayList<>();
+        if (orderBy != null && !orderBy.trim().isEmpty()) {
+            for (String term : orderBy.split(",")) {
+                String[] parts = term.trim().split("\\s+");
+                if (parts.length > 2) {
+                    return null;
+                }
+                String direction = parts.length == 2 ? parts[1].toUpperCase(Locale.US) : "ASC";
+                Field field = getField(parts[0]);
+                if (field == null || Util.isByteArray(field) || !(direction.equals("ASC") || direction.equals("DESC"))) {
+                    return null;
+                }
+                fields.add(field);
+                descending.add(direction.equals("DESC"));
+            }
+        }
+
+        return (a, b) -> {
+            try {
+                for (int i = 0; i < fields.size(); i++) {
+                    int result = compare(fields.get(i).get(a), fields.get(i).get(b));
+                    if (result != 0) {
+                        return descending.get(i) ? -result : result;
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                Log.e(TAG, "Failed to read field", e);
+            }
+            return Long.compare(a._id, b._id);
+        };
+    }
+
+    // Follows SQLite, where nulls sort first
+    static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Boolean) {
+            a = (Boolean) a ? 1 : 0;
+        }
+        if (b instanceof Boolean) {
+            b = (Boolean) b ? 1 : 0;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * Returns {offset, limit} for a SQL limit clause, where a negative limit means every row, or
+     * null if the clause can't be parsed
+     */
+    static int[] parseLimit(String limit) {
+        if (limit == null) {
+            return new int[] { 0, -1 };
+        }
+        try {
+            String[] parts = limit.split(",");
+            if (parts.length == 1) {
+                return new int[] { 0, Integer.parseInt(parts[0].trim()) };
+            } else if (parts.length == 2) {
+                return new int[] { Math.max(0, Integer.parseInt(parts[0].trim())), Integer.parseInt(parts[1].trim()) };
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to SQLite
+        }
+        return null;
+    }
+
+    private Field getField(String column) {
+        try {
+            return column == null ? null : mInfo.getField(column);
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    // The column's value as a hash key. See Param#toComparable(Object).
+    private String getValue(T row, String column) {
+        try {
+            return Param.toComparable(getField(column).get(row));
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Failed to read field", e);
+            return null;
+        }
+    }
+
+    private static final class Transaction {
+        int depth;
+        boolean failed;
+        final List<Runnable> changes = new ArrayList<>();
+    }
+}
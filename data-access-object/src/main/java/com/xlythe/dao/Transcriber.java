@@ -20,25 +20,64 @@ import static com.xlythe.dao.Util.isString;
 import static com.xlythe.dao.Model.TAG;
 
 public class Transcriber {
+    /**
+     * Returns the generated adapter for the model, or null if one wasn't generated
+     */
+    @SuppressWarnings("unchecked")
+    static <A extends BaseModel<A>> ModelAdapter<A> loadAdapter(Class<A> clazz) {
+        try {
+            Class<?> adapterClass = Class.forName(ModelAdapter.getAdapterName(clazz), true, clazz.getClassLoader());
+            return (ModelAdapter<A>) adapterClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            if (BaseModel.DEBUG) Log.d(TAG, "No generated adapter for " + clazz + ", falling back to reflection");
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            Log.e(TAG, "Failed to load the generated adapter for " + clazz, e);
+        }
+        return null;
+    }
 
     /**
      * Updates the values of the instance with the cursor's current position
      */
     static <A extends BaseModel<A>> A inflate(A instance, Cursor cursor) {
+        return inflate(instance, cursor, instance.getModelInfo().getColumnIndices(cursor));
+    }
+
+    /**
+     * Updates the values of the instance with the cursor's current position, using column indices
+     * from {@link ModelInfo#getColumnIndices(Cursor)}
+     */
+    static <A extends BaseModel<A>> A inflate(A instance, Cursor cursor, int[] indices) {
+        ModelInfo<A> info = instance.getModelInfo();
+        ModelAdapter<A> adapter = info.getAdapter();
+        if (adapter != null) {
+            adapter.inflate(instance, cursor, indices);
+            return instance;
+        }
+
         try {
-            for (Field field : instance.getFields()) {
+            Field[] fields = info.getFields();
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                int index = indices[i];
+
+                // Columns that weren't selected keep their default values
+                if (index == -1) {
+                    continue;
+                }
+
                 if (isInt(field)) {
-                    field.setInt(instance, cursor.getInt(cursor.getColumnIndex(getName(field))));
+                    field.setInt(instance, cursor.getInt(index));
                 } else if (isLong(field)) {
-                    field.setLong(instance, cursor.getLong(cursor.getColumnIndex(getName(field))));
+                    field.setLong(instance, cursor.getLong(index));
                 } else if (isFloat(field)) {
-                    field.setFloat(instance, cursor.getFloat(cursor.getColumnIndex(getName(field))));
+                    field.setFloat(instance, cursor.getFloat(index));
                 } else if (isBoolean(field)) {
-                    field.setBoolean(instance, 1 == cursor.getInt(cursor.getColumnIndex(getName(field))));
+                    field.setBoolean(instance, 1 == cursor.getInt(index));
                 } else if (isString(field)) {
-                    field.set(instance, cursor.getString(cursor.getColumnIndex(getName(field))));
+                    field.set(instance, cursor.getString(index));
                 } else if (isByteArray(field)) {
-                    field.set(instance, cursor.getBlob(cursor.getColumnIndex(getName(field))));
+                    field.set(instance, cursor.getBlob(index));
                 } else {
                     throw new UnsupportedClassVersionError(field.getType() + " is not supported");
                 }
@@ -53,30 +92,46 @@ public class Transcriber {
      * Updates the values of the instance with the JSONObject's values
      */
     static <A extends BaseModel<A>> A inflate(A instance, JSONObject object) {
+        ModelInfo<A> info = instance.getModelInfo();
+        ModelAdapter<A> adapter = info.getAdapter();
+        if (adapter != null) {
+            try {
+                adapter.inflate(instance, object);
+            } catch (JSONException e) {
+                Log.e(TAG, "Trouble parsing the json object", e);
+            }
+            return instance;
+        }
+
         try {
-            for (Field field : instance.getFields()) {
+            Field[] fields = info.getFields();
+            String[] columns = info.getColumns();
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                String name = columns[i];
+
                 // Special case for _ID, which is a field we add ourselves.
-                if (BaseModel._ID.equals(getName(field)) && !object.has(BaseModel._ID)) {
+                if (BaseModel._ID.equals(name) && !object.has(BaseModel._ID)) {
                     continue;
                 }
 
                 // Ignore null values, since our instance will default all fields to null
-                if (object.isNull(getName(field))) {
+                if (object.isNull(name)) {
                     continue;
                 }
 
                 if (isInt(field)) {
-                    field.setInt(instance, object.getInt(getName(field)));
+                    field.setInt(instance, object.getInt(name));
                 } else if (isLong(field)) {
-                    field.setLong(instance, object.getLong(getName(field)));
+                    field.setLong(instance, object.getLong(name));
                 } else if (isFloat(field)) {
-                    field.setFloat(instance, (float) object.getDouble(getName(field)));
+                    field.setFloat(instance, (float) object.getDouble(name));
                 } else if (isBoolean(field)) {
-                    field.setBoolean(instance, object.getBoolean(getName(field)));
+                    field.setBoolean(instance, object.getBoolean(name));
                 } else if (isString(field)) {
-                    field.set(instance, object.getString(getName(field)));
+                    field.set(instance, object.getString(name));
                 } else if (isByteArray(field)) {
-                    byte[] bytes = Base64.decode(object.getString(getName(field)), Base64.DEFAULT);
+                    byte[] bytes = Base64.decode(object.getString(name), Base64.DEFAULT);
                     field.set(instance, bytes);
                 } else {
                     throw new UnsupportedClassVersionError(field.getType() + " is not supported");
@@ -95,8 +150,13 @@ public class Transcriber {
      */
     static <A extends BaseModel<A>> A inflate(A instance, Param... params) {
         try {
+            ModelInfo<A> info = instance.getModelInfo();
             for (Param param : params) {
-                Field field = instance.getField(param.getKey());
+                // Only key = value params describe a value. Ranges, lists and groups are skipped.
+                if (!param.isEquality()) {
+                    continue;
+                }
+                Field field = info.getField(param.getKey());
                 if (isInt(field)) {
                     field.setInt(instance, Integer.parseInt(param.getValue()));
                 } else if (isLong(field)) {
@@ -121,28 +181,55 @@ public class Transcriber {
         return instance;
     }
 
+    /**
+     * Copies every persisted field (and _id) from one instance to another. byte[]s are cloned, so
+     * that the two instances don't share them.
+     */
+    static <A extends BaseModel<A>> A copy(A from, A to) {
+        try {
+            for (Field field : from.getModelInfo().getFields()) {
+                Object value = field.get(from);
+                field.set(to, value instanceof byte[] ? ((byte[]) value).clone() : value);
+            }
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Access wasn't public. Should never happen, though.", e);
+        }
+        return to;
+    }
+
     /**
      * Creates a ContentValues from the given model
      */
     static <A extends BaseModel<A>> ContentValues getContentValues(A instance) {
         ContentValues contentValues = new ContentValues();
+        ModelInfo<A> info = instance.getModelInfo();
+        ModelAdapter<A> adapter = info.getAdapter();
+        if (adapter != null) {
+            adapter.getContentValues(instance, contentValues);
+            return contentValues;
+        }
+
         try {
-            for (Field field : instance.getFields()) {
+            Field[] fields = info.getFields();
+            String[] columns = info.getColumns();
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                String name = columns[i];
                 if (BaseModel.DEBUG) {
-                    Log.v(TAG, "getContentValues: " + getName(field));
+                    Log.v(TAG, "getContentValues: " + name);
                 }
                 if (isInt(field)) {
-                    contentValues.put(getName(field), field.getInt(instance));
+                    contentValues.put(name, field.getInt(instance));
                 } else if (isLong(field)) {
-                    contentValues.put(getName(field), field.getLong(instance));
+                    contentValues.put(name, field.getLong(instance));
                 } else if (isFloat(field)) {
-                    contentValues.put(getName(field), field.getFloat(instance));
+                    contentValues.put(name, field.getFloat(instance));
                 } else if (isBoolean(field)) {
-                    contentValues.put(getName(field), field.getBoolean(instance) ? 1 : 0);
+                    contentValues.put(name, field.getBoolean(instance) ? 1 : 0);
                 } else if (isString(field)) {
-                    contentValues.put(getName(field), (String) field.get(instance));
+                    contentValues.put(name, (String) field.get(instance));
                 } else if (isByteArray(field)) {
-                    contentValues.put(getName(field), (byte[]) field.get(instance));
+                    contentValues.put(name, (byte[]) field.get(instance));
                 } else {
                     throw new UnsupportedClassVersionError(field.getType() + " is not supported");
                 }
@@ -159,22 +246,37 @@ public class Transcriber {
      */
     static <A extends BaseModel<A>> JSONObject getJSONObject(A instance) {
         JSONObject object = new JSONObject();
+        ModelInfo<A> info = instance.getModelInfo();
+        ModelAdapter<A> adapter = info.getAdapter();
+        if (adapter != null) {
+            try {
+                adapter.getJSONObject(instance, object);
+            } catch (JSONException e) {
+                Log.e(TAG, "Trouble parsing the json object", e);
+            }
+            return object;
+        }
+
         try {
-            for (Field field : instance.getFields()) {
+            Field[] fields = info.getFields();
+            String[] columns = info.getColumns();
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                String name = columns[i];
                 if (isInt(field)) {
-                    object.put(getName(field), field.getInt(instance));
+                    object.put(name, field.getInt(instance));
                 } else if (isLong(field)) {
-                    object.put(getName(field), field.getLong(instance));
+                    object.put(name, field.getLong(instance));
                 } else if (isFloat(field)) {
-                    object.put(getName(field), field.getFloat(instance));
+                    object.put(name, field.getFloat(instance));
                 } else if (isBoolean(field)) {
-                    object.put(getName(field), field.getBoolean(instance));
+                    object.put(name, field.getBoolean(instance));
                 } else if (isString(field)) {
-                    object.put(getName(field), field.get(instance));
+                    object.put(name, field.get(instance));
                 } else if (isByteArray(field)) {
                     byte[] bytes = (byte[]) field.get(instance);
                     if (bytes != null) {
-                        object.put(getName(field), Base64.encodeToString(bytes, Base64.DEFAULT));
+                        object.put(name, Base64.encodeToString(bytes, Base64.DEFAULT));
                     }
                 } else {
                     throw new UnsupportedClassVersionError(field.getType() + " is not supported");
@@ -3,6 +3,7 @@ package com.xlythe.dao;
 import android.content.Context;
 import android.util.Log;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 
@@ -37,6 +38,24 @@ public class Util {
         return field.getAnnotation(Unique.class) != null;
     }
 
+    static String getType(Field field) {
+        if (isInt(field)) {
+            return "integer";
+        } else if (isLong(field)) {
+            return "integer";
+        } else if (isFloat(field)) {
+            return "float";
+        } else if (isBoolean(field)) {
+            return "integer";
+        } else if (isString(field)) {
+            return "text";
+        } else if (isByteArray(field)) {
+            return "blob";
+        } else {
+            throw new UnsupportedClassVersionError(field.getType() + " is not supported");
+        }
+    }
+
     static int getDatabaseVersion(Class<?> clazz) {
         if (clazz.isAnnotationPresent(Database.class)) {
             Database annotation = clazz.getAnnotation(Database.class);
@@ -53,6 +72,38 @@ public class Util {
         return false;
     }
 
+    static Database.Layout getLayout(Class<?> clazz) {
+        if (clazz.isAnnotationPresent(Database.class)) {
+            Database annotation = clazz.getAnnotation(Database.class);
+            return annotation.layout();
+        }
+        return Database.Layout.AUTOINCREMENT;
+    }
+
+    static int getCacheSize(Class<?> clazz) {
+        if (clazz.isAnnotationPresent(Database.class)) {
+            Database annotation = clazz.getAnnotation(Database.class);
+            return annotation.cacheSize();
+        }
+        return 0;
+    }
+
+    static boolean cacheQueries(Class<?> clazz) {
+        if (clazz.isAnnotationPresent(Database.class)) {
+            Database annotation = clazz.getAnnotation(Database.class);
+            return annotation.cacheQueries();
+        }
+        return false;
+    }
+
+    static boolean isMirrored(Class<?> clazz) {
+        if (clazz.isAnnotationPresent(Database.class)) {
+            Database annotation = clazz.getAnnotation(Database.class);
+            return annotation.mirror();
+        }
+        return false;
+    }
+
     static String getTableName(Class<?> clazz) {
         if (clazz.isAnnotationPresent(Database.class)) {
             Database annotation = clazz.getAnnotation(Database.class);
@@ -76,10 +127,13 @@ public class Util {
     }
 
     static <B extends BaseModel<B>> B newInstance(Class<B> clazz, Context context) {
+        Constructor<B> constructor = ModelInfo.get(clazz).getConstructor();
+        if (constructor == null) {
+            throw new RuntimeException("Your model (" + clazz.getSimpleName() + ") must have a constructor that takes a Context");
+        }
+
         try {
-            return clazz.getDeclaredConstructor(Context.class).newInstance(context);
-        } catch (NoSuchMethodException e) {
-            Log.e(TAG, "Failed to find constructor", e);
+            return constructor.newInstance(context);
         } catch (IllegalAccessException e) {
             Log.e(TAG, "Constructor was not public", e);
         } catch (InvocationTargetException e) {
@@ -135,12 +135,12 @@ public class DefaultServer implements Server {
             }
 
             try {
-                String jsonString =
-                        new String(
-                                response.data,
-                                HttpHeaderParser.parseCharset(response.headers, PROTOCOL_CHARSET));
-                return Response.success(new JSONResult(jsonString), HttpHeaderParser.parseCacheHeaders(response));
-            } catch (UnsupportedEncodingException e) {
+                // The bytes are handed over as is, so that they can be streamed into models without first becoming a String
+                JSONResult result = new JSONResult(
+                        response.data,
+                        HttpHeaderParser.parseCharset(response.headers, PROTOCOL_CHARSET));
+                return Response.success(result, HttpHeaderParser.parseCacheHeaders(response));
+            } catch (IllegalArgumentException e) {
                 return Response.error(new ParseError(e));
             }
         }
@@ -1,19 +1,59 @@
 package com.xlythe.dao.remote;
 
+import android.util.JsonReader;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
 public class JSONResult {
-    private final String result;
+    private final byte[] data;
+    private final Charset charset;
+    private String result;
 
     public JSONResult(String result) {
+        this.data = null;
+        this.charset = null;
         this.result = result;
     }
 
+    /**
+     * Wraps the raw bytes of a response. They're only decoded into a String if the result is read
+     * as a JSONObject or JSONArray, so that {@link #newJsonReader()} can stream them instead.
+     *
+     * @throws IllegalArgumentException if the charset isn't supported
+     */
+    public JSONResult(byte[] data, String charset) {
+        this.data = data;
+        this.charset = Charset.forName(charset);
+    }
+
+    private synchronized String getResult() {
+        if (result == null) {
+            result = new String(data, charset);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a reader over the result, for parsing it without building a JSONObject or JSONArray
+     * of the whole thing. The reader must be closed.
+     */
+    public JsonReader newJsonReader() {
+        if (data != null) {
+            return new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), charset));
+        }
+        return new JsonReader(new StringReader(result));
+    }
+
     public JSONObject asJSONObject() {
         try {
-            return new JSONObject(result);
+            return new JSONObject(getResult());
         } catch (JSONException e) {
             throw new IllegalStateException(e);
         }
@@ -21,7 +61,7 @@ public class JSONResult {
 
     public JSONArray asJSONArray() {
         try {
-            return new JSONArray(result);
+            return new JSONArray(getResult());
         } catch (JSONException e) {
             throw new IllegalStateException(e);
         }
@@ -0,0 +1,35 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+
+@Database(version=1, retainDataOnUpgrade=false, layout=Database.Layout.UNIQUE_ROWID, cacheSize=2)
+public class MockKeyedModel extends Model<MockKeyedModel> {
+    public static class Query extends Model.Query<MockKeyedModel> {
+        public Query(Context context) {
+            super(MockKeyedModel.class, context);
+        }
+
+        public MockKeyedModel.Query id(long id) {
+            where(new Param("id", id));
+            return this;
+        }
+    }
+
+    @Unique
+    long id;
+    String title;
+
+    public MockKeyedModel(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void save() {
+        super.save();
+    }
+
+    @Override
+    public void delete() {
+        super.delete();
+    }
+}
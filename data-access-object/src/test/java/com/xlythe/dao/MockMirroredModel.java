@@ -0,0 +1,43 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+
+@Database(version=1, retainDataOnUpgrade=false, mirror=true)
+public class MockMirroredModel extends Model<MockMirroredModel> {
+    public static class Query extends Model.Query<MockMirroredModel> {
+        public Query(Context context) {
+            super(MockMirroredModel.class, context);
+        }
+
+        public MockMirroredModel.Query code(String code) {
+            where(new Param("code", code));
+            return this;
+        }
+
+        public MockMirroredModel.Query category(String category) {
+            where(new Param("category", category));
+            return this;
+        }
+    }
+
+    @Unique
+    String code;
+    @Index
+    String category;
+    int rank;
+    float price;
+
+    public MockMirroredModel(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void save() {
+        super.save();
+    }
+
+    @Override
+    public void delete() {
+        super.delete();
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.CursorWrapper;
 
 @Database(version=1, retainDataOnUpgrade=false)
+@Index(columns={"title", "my_int"}, where="title IS NOT NULL")
 public class MockModel extends Model<MockModel> {
     public static void registerObserver(Observer observer) {
         registerObserver(MockModel.class, observer);
@@ -72,6 +73,7 @@ public class MockModel extends Model<MockModel> {
     }
 
     private String title;
+    @Index
     private long my_long;
     private boolean my_bool;
     private int my_int;
@@ -0,0 +1,60 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+
+/**
+ * Its fields are private and have no setters, so the annotation processor skips it and it's
+ * read and written through reflection.
+ */
+@Database(version=1, retainDataOnUpgrade=false)
+public class MockReflectedModel extends Model<MockReflectedModel> {
+    public static class Query extends Model.Query<MockReflectedModel> {
+        public Query(Context context) {
+            super(MockReflectedModel.class, context);
+        }
+
+        public MockReflectedModel.Query name(String name) {
+            where(new Param("name", name));
+            return this;
+        }
+    }
+
+    @Unique
+    private String name;
+    private int count;
+    private boolean enabled;
+    private byte[] data;
+
+    public MockReflectedModel(Context context) {
+        super(context);
+    }
+
+    public MockReflectedModel(Context context, String name, int count, boolean enabled, byte[] data) {
+        super(context);
+        this.name = name;
+        this.count = count;
+        this.enabled = enabled;
+        this.data = data;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public void save() {
+        super.save();
+    }
+}
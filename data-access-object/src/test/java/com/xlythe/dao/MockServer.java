@@ -8,9 +8,11 @@ import org.json.JSONObject;
 public class MockServer implements Server {
     private int responseCode = 500;
     private JSONResult response = null;
+    private JSONObject lastParams = null;
 
     @Override
     public void get(String url, JSONObject params, Callback<JSONResult> callback) {
+        lastParams = params;
         if (responseCode >= 200 && responseCode < 300) {
             callback.onSuccess(response);
         } else {
@@ -49,4 +51,8 @@ public class MockServer implements Server {
         this.responseCode = responseCode;
         this.response = response;
     }
+
+    public JSONObject getLastParams() {
+        return lastParams;
+    }
 }
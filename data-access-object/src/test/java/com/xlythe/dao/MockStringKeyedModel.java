@@ -0,0 +1,30 @@
+package com.xlythe.dao;
+
+import android.content.Context;
+
+@Database(version=1, retainDataOnUpgrade=false, layout=Database.Layout.WITHOUT_ROWID)
+public class MockStringKeyedModel extends Model<MockStringKeyedModel> {
+    public static class Query extends Model.Query<MockStringKeyedModel> {
+        public Query(Context context) {
+            super(MockStringKeyedModel.class, context);
+        }
+
+        public MockStringKeyedModel.Query key(String key) {
+            where(new Param("key", key));
+            return this;
+        }
+    }
+
+    @Unique
+    String key;
+    String title;
+
+    public MockStringKeyedModel(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void save() {
+        super.save();
+    }
+}
@@ -1,6 +1,8 @@
 package com.xlythe.dao;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.database.sqlite.SQLiteStatement;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -11,7 +13,11 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
@@ -164,4 +170,819 @@ public class ModelTest {
 
         assertEquals(0, new MockModel.Query(mContext).count());
     }
+
+    @Test
+    public void modelInfo() {
+        ModelInfo<MockModel> info = ModelInfo.get(MockModel.class);
+        assertTrue(info == ModelInfo.get(MockModel.class));
+        assertEquals(6, info.getColumns().length);
+        assertEquals(BaseModel._ID, info.getColumns()[info.getColumns().length - 1]);
+        assertEquals("MockModel", info.getTableName());
+    }
+
+    @Test
+    public void sharedDataSource() {
+        new MockModel.Query(mContext).myInt(1).insert();
+        new MockModel.Query(mContext).myInt(2).insert();
+
+        List<MockModel> results = new MockModel.Query(mContext).all();
+        assertTrue(results.get(0).getDataSource() == results.get(1).getDataSource());
+        assertTrue(results.get(0).getDataSource() == new MockModel.Query(mContext).getDataSource());
+    }
+
+    @Test
+    public void compile() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).insert();
+        new MockModel.Query(mContext).title("Hello World").myInt(2).insert();
+        new MockModel.Query(mContext).title("Goodbye World").myInt(3).insert();
+
+        try (CompiledQuery<MockModel> query = new MockModel.Query(mContext).title(null).compile()) {
+            assertEquals(2, query.count("Hello World"));
+            assertEquals(1, query.count("Goodbye World"));
+            assertEquals(0, query.count("Unknown"));
+            assertEquals(3, query.first("Goodbye World").getMyInt());
+            assertEquals(2, query.all("Hello World").size());
+            assertEquals(1, query.delete("Goodbye World"));
+        }
+
+        assertEquals(2, new MockModel.Query(mContext).count());
+    }
+
+    @Test
+    public void bulkWrites() {
+        List<MockModel> models = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MockModel mockModel = new MockModel(mContext);
+            mockModel.setTitle("Hello World");
+            models.add(mockModel);
+        }
+
+        final int[] changes = new int[1];
+        Model.Observer observer = () -> changes[0]++;
+        MockModel.registerObserver(observer);
+        try {
+            new MockModel.Query(mContext).chunkSize(2).insertAll(models);
+            assertEquals(1, changes[0]);
+            assertEquals(5, new MockModel.Query(mContext).title("Hello World").count());
+
+            for (MockModel mockModel : models) {
+                mockModel.setTitle("Goodbye World");
+            }
+            new MockModel.Query(mContext).saveAll(models);
+            assertEquals(2, changes[0]);
+            assertEquals(5, new MockModel.Query(mContext).title("Goodbye World").count());
+            assertEquals(5, new MockModel.Query(mContext).count());
+
+            new MockModel.Query(mContext).deleteAll(models.subList(0, 3));
+            assertEquals(3, changes[0]);
+            assertEquals(2, new MockModel.Query(mContext).count());
+        } finally {
+            MockModel.unregisterObserver(observer);
+        }
+    }
+
+    @Test
+    public void releaseStatementAfterClose() {
+        String sql = "SELECT 1";
+
+        ModelDataSource<MockModel> dataSource = new MockModel.Query(mContext).open();
+        SQLiteStatement statement;
+        try {
+            statement = dataSource.acquireStatement(sql);
+        } finally {
+            dataSource.close();
+        }
+        ConnectionManager.closeIdleConnections();
+
+        // The statement's connection is gone, so it's closed instead of being pooled
+        dataSource.releaseStatement(sql, statement);
+
+        dataSource = new MockModel.Query(mContext).open();
+        try {
+            SQLiteStatement next = dataSource.acquireStatement(sql);
+            assertTrue(next != statement);
+            assertEquals(1, next.simpleQueryForLong());
+            dataSource.releaseStatement(sql, next);
+            assertTrue(next == dataSource.acquireStatement(sql));
+            dataSource.releaseStatement(sql, next);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void upsert() {
+        MockModel mockModel = new MockModel(mContext);
+        mockModel.setTitle("Hello World");
+
+        ModelDataSource<MockModel> dataSource = new MockModel.Query(mContext).open();
+        try {
+            assertTrue(dataSource.upsert(mockModel));
+            long id = mockModel.get_Id();
+
+            mockModel.setTitle("Goodbye World");
+            assertFalse(dataSource.upsert(mockModel));
+            assertEquals(id, mockModel.get_Id());
+        } finally {
+            dataSource.close();
+        }
+
+        assertEquals(1, new MockModel.Query(mContext).count());
+        assertEquals(mockModel.get_Id(), new MockModel.Query(mContext).title("Goodbye World").first().get_Id());
+    }
+
+    @Test
+    public void saveUnique() {
+        new MockMirroredModel(mContext).dropTable();
+
+        MockMirroredModel model = new MockMirroredModel(mContext);
+        model.code = "USD";
+        model.save();
+        assertTrue(model.get_Id() != 0);
+        long id = model.get_Id();
+
+        MockMirroredModel copy = new MockMirroredModel(mContext);
+        copy.code = "USD";
+        copy.rank = 1;
+        copy.save();
+        assertEquals(id, copy.get_Id());
+        assertEquals(1, new MockMirroredModel.Query(mContext).count());
+        assertEquals(id, new MockMirroredModel.Query(mContext).code("USD").first().get_Id());
+    }
+
+    @Test
+    public void insertUnique() {
+        new MockMirroredModel(mContext).dropTable();
+
+        MockMirroredModel first = new MockMirroredModel.Query(mContext).code("USD").category("fiat").insert();
+        MockMirroredModel second = new MockMirroredModel.Query(mContext).code("USD").category("legacy").insert();
+        assertTrue(first.get_Id() != second.get_Id());
+
+        // The unique index makes the second insert replace the first row
+        assertEquals(1, new MockMirroredModel.Query(mContext).count());
+        MockMirroredModel stored = new MockMirroredModel.Query(mContext).code("USD").first();
+        assertEquals(second.get_Id(), stored.get_Id());
+        assertEquals("legacy", stored.category);
+        assertNull(new MockMirroredModel.Query(mContext).category("fiat").first());
+    }
+
+    @Test
+    public void reflectionFallback() {
+        new MockReflectedModel(mContext).dropTable();
+        assertNull(ModelInfo.get(MockReflectedModel.class).getAdapter());
+
+        new MockReflectedModel(mContext, "first", 1, true, new byte[] {1, 2}).save();
+        new MockReflectedModel(mContext, "second", 2, false, null).save();
+
+        MockReflectedModel result = new MockReflectedModel.Query(mContext).name("first").first();
+        assertEquals("first", result.getName());
+        assertEquals(1, result.getCount());
+        assertTrue(result.isEnabled());
+        assertTrue(Arrays.equals(new byte[] {1, 2}, result.getData()));
+
+        // Saving by the @Unique key updates the existing row
+        new MockReflectedModel(mContext, "first", 3, false, null).save();
+        assertEquals(2, new MockReflectedModel.Query(mContext).count());
+        result = new MockReflectedModel.Query(mContext).name("first").first();
+        assertEquals(3, result.getCount());
+        assertFalse(result.isEnabled());
+        assertNull(result.getData());
+    }
+
+    @Test
+    public void cursorColumnIndices() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).insert();
+        new MockModel.Query(mContext).title("Goodbye World").myInt(2).insert();
+
+        try (MockModel.Cursor cursor = new MockModel.Query(mContext).orderByMyIntAsc().cursor()) {
+            ModelInfo<MockModel> info = ModelInfo.get(MockModel.class);
+            int[] indices = info.getColumnIndices(cursor);
+            assertTrue(indices == info.getColumnIndices(cursor));
+
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Hello World", cursor.getMockModel().getTitle());
+            assertTrue(cursor.moveToNext());
+            assertEquals("Goodbye World", cursor.getMockModel().getTitle());
+            assertEquals(2, cursor.getMockModel().getMyInt());
+        }
+    }
+
+    @Test
+    public void lazy() {
+        for (int i = 1; i <= 5; i++) {
+            new MockModel.Query(mContext).myInt(i).insert();
+        }
+
+        try (LazyList<MockModel> list = new MockModel.Query(mContext).orderByMyIntAsc().lazy()) {
+            assertEquals(5, list.size());
+            assertEquals(3, list.get(2).getMyInt());
+            assertTrue(list.get(2) == list.get(2));
+            assertEquals(1, list.get(0).getMyInt());
+
+            int expected = 1;
+            for (MockModel mockModel : list) {
+                assertEquals(expected++, mockModel.getMyInt());
+            }
+        }
+
+        try (LazyList<MockModel> list = new MockModel.Query(mContext).orderByMyIntAsc().lazy(2, 1)) {
+            assertEquals(2, list.size());
+            assertEquals(2, list.get(0).getMyInt());
+            assertEquals(3, list.get(1).getMyInt());
+            list.close();
+            assertTrue(list.isClosed());
+            try {
+                list.get(0);
+                fail();
+            } catch (IllegalStateException e) {
+                // ignored
+            }
+        }
+    }
+
+    @Test
+    public void scan() {
+        for (int i = 1; i <= 5; i++) {
+            new MockModel.Query(mContext).myInt(i).insert();
+        }
+
+        final int[] sum = new int[1];
+        final MockModel[] instance = new MockModel[1];
+        new MockModel.Query(mContext).forEach(mockModel -> {
+            if (instance[0] != null) {
+                assertTrue(instance[0] == mockModel);
+            }
+            instance[0] = mockModel;
+            sum[0] += mockModel.getMyInt();
+        });
+        assertEquals(15, sum[0]);
+
+        try (ModelIterator<MockModel> iterator = new MockModel.Query(mContext).orderByMyIntDesc().scan()) {
+            assertTrue(iterator.hasNext());
+            assertEquals(5, iterator.next().getMyInt());
+            assertEquals(4, iterator.next().getMyInt());
+        }
+
+        ModelIterator<MockModel> iterator = new MockModel.Query(mContext).myInt(6).scan();
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void columns() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).myLong(10).insert();
+        new MockModel.Query(mContext).title("Goodbye World").myInt(2).myLong(20).insert();
+
+        long[] longs = new MockModel.Query(mContext).orderByMyIntAsc().longColumn("my_long");
+        assertEquals(2, longs.length);
+        assertEquals(10, longs[0]);
+        assertEquals(20, longs[1]);
+
+        int[] ints = new MockModel.Query(mContext).title("Goodbye World").intColumn("my_int");
+        assertEquals(1, ints.length);
+        assertEquals(2, ints[0]);
+
+        String[] titles = new MockModel.Query(mContext).orderByMyIntDesc().stringColumn("title");
+        assertEquals("Goodbye World", titles[0]);
+        assertEquals("Hello World", titles[1]);
+
+        assertEquals(0, new MockModel.Query(mContext).myInt(3).longColumn("my_long").length);
+
+        try {
+            new MockModel.Query(mContext).intColumn("unknown");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+    }
+
+    @Test
+    public void select() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).myByteArray(new byte[]{ 1, 2, 3 }).insert();
+
+        MockModel mockModel = new MockModel.Query(mContext).select("title").first();
+        assertEquals("Hello World", mockModel.getTitle());
+        assertEquals(0, mockModel.getMyInt());
+        assertNull(mockModel.getMyByteArray());
+        assertTrue(mockModel.get_Id() != 0);
+
+        mockModel = new MockModel.Query(mContext).select("my_int").all().get(0);
+        assertNull(mockModel.getTitle());
+        assertEquals(1, mockModel.getMyInt());
+
+        try {
+            new MockModel.Query(mContext).select("unknown");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+    }
+
+    @Test
+    public void operators() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).insert();
+        new MockModel.Query(mContext).title("Hello There").myInt(2).insert();
+        new MockModel.Query(mContext).title("Goodbye World").myInt(3).insert();
+        new MockModel.Query(mContext).myInt(4).insert();
+
+        assertEquals(2, new MockModel.Query(mContext).where(Param.greaterThan("my_int", 2)).count());
+        assertEquals(3, new MockModel.Query(mContext).where(Param.greaterThanOrEqualTo("my_int", 2)).count());
+        assertEquals(1, new MockModel.Query(mContext).where(Param.lessThan("my_int", 2)).count());
+        assertEquals(2, new MockModel.Query(mContext).where(Param.lessThanOrEqualTo("my_int", 2)).count());
+        assertEquals(3, new MockModel.Query(mContext).where(Param.notEqualTo("my_int", 2)).count());
+        assertEquals(2, new MockModel.Query(mContext).where(Param.like("title", "Hello%")).count());
+        assertEquals(1, new MockModel.Query(mContext).where(Param.isNull("title")).count());
+        assertEquals(3, new MockModel.Query(mContext).where(Param.isNotNull("title")).count());
+        assertEquals(2, new MockModel.Query(mContext).where(Param.in("my_int", 1, 3, 5)).count());
+        assertEquals(0, new MockModel.Query(mContext).where(Param.in("my_int")).count());
+        assertEquals(2, new MockModel.Query(mContext).where(Param.or(
+                Param.and(Param.like("title", "%World"), Param.greaterThan("my_int", 2)),
+                Param.isNull("title"))).count());
+
+        // Long lists are split across statements, with each row in a different statement
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < Param.MAX_BOUND_ARGUMENTS * 3; i++) {
+            values.add(i % Param.MAX_BOUND_ARGUMENTS == 0 ? i / Param.MAX_BOUND_ARGUMENTS + 1 : -i);
+        }
+        values.add(4);
+        assertEquals(4, new MockModel.Query(mContext).where(Param.in("my_int", values)).count());
+        assertTrue(new MockModel.Query(mContext).where(Param.in("my_int", values)).exists());
+        List<MockModel> models = new MockModel.Query(mContext).where(Param.in("my_int", values)).orderByMyIntDesc().limit(2, 1);
+        assertEquals(2, models.size());
+        assertEquals(3, models.get(0).getMyInt());
+        assertEquals(2, models.get(1).getMyInt());
+        assertEquals(4.0, new MockModel.Query(mContext).where(Param.in("my_int", values)).max("my_int"));
+        assertEquals(2.5, new MockModel.Query(mContext).where(Param.in("my_int", values)).avg("my_int"));
+        assertEquals(4, new MockModel.Query(mContext).where(Param.in("my_int", values)).distinct("my_int").length);
+        assertEquals(4, new MockModel.Query(mContext).where(Param.in("my_int", values)).groupBy("title").count().size());
+        assertEquals(4, new MockModel.Query(mContext).where(Param.in("my_int", values)).update("my_long", 5L));
+        assertEquals(4, new MockModel.Query(mContext).myLong(5).count());
+
+        // Lists that fit on their own, but not together
+        List<Integer> half = values.subList(0, Param.MAX_BOUND_ARGUMENTS / 2 + 1);
+        assertEquals(1, new MockModel.Query(mContext).where(Param.in("my_int", half), Param.in("my_int", half)).count());
+
+        assertEquals(3, new MockModel.Query(mContext).orderByMyIntAsc().where(Param.greaterThan("my_int", 1)).first().getMyInt());
+
+        try (CompiledQuery<MockModel> query = new MockModel.Query(mContext).where(Param.greaterThan("my_int", 0), Param.isNotNull("title")).compile()) {
+            assertEquals(2, query.count(1));
+            assertEquals(0, query.count(3));
+        }
+
+        new MockModel.Query(mContext).where(Param.lessThan("my_int", 3)).delete();
+        assertEquals(2, new MockModel.Query(mContext).count());
+
+        // Blobs are bound as blobs, whether the list fits in one statement or not
+        new MockModel.Query(mContext).myInt(4).update("my_byte_array", new byte[] { 1, 2, 3 });
+        assertEquals(4, new MockModel.Query(mContext).myByteArray(new byte[] { 1, 2, 3 }).first().getMyInt());
+        assertEquals(4, new MockModel.Query(mContext).where(Param.in("my_byte_array", new byte[] { 9 }, new byte[] { 1, 2, 3 })).first().getMyInt());
+        List<byte[]> blobs = new ArrayList<>();
+        for (int i = 0; i < Param.MAX_BOUND_ARGUMENTS; i++) {
+            blobs.add(new byte[] { (byte) (i >> 8), (byte) i });
+        }
+        blobs.add(new byte[] { 1, 2, 3 });
+        assertEquals(4, new MockModel.Query(mContext).where(Param.in("my_byte_array", blobs)).first().getMyInt());
+    }
+
+    @Test
+    public void indices() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).insert();
+
+        ModelDataSource<MockModel> dataSource = new MockModel.Query(mContext).open();
+        try {
+            assertTrue(hasIndex(dataSource, "MockModel_index_my_long"));
+            assertTrue(hasIndex(dataSource, "MockModel_index_title_my_int"));
+            assertFalse(hasIndex(dataSource, "MockModel_index_title"));
+        } finally {
+            dataSource.close();
+        }
+
+        assertEquals(1, new MockModel.Query(mContext).title("Hello World").myInt(1).count());
+    }
+
+    private static boolean hasIndex(ModelDataSource<?> dataSource, String name) {
+        android.database.sqlite.SQLiteStatement statement = dataSource.compileStatement(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = ?");
+        try {
+            statement.bindString(1, name);
+            return statement.simpleQueryForLong() == 1;
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Test
+    public void uniqueRowidLayout() {
+        new MockKeyedModel(mContext).dropTable();
+
+        MockKeyedModel model = new MockKeyedModel(mContext);
+        model.id = 42;
+        model.title = "Hello World";
+        model.save();
+        assertEquals(42, model.get_Id());
+
+        model.title = "Goodbye World";
+        model.save();
+        assertEquals(1, new MockKeyedModel.Query(mContext).count());
+
+        MockKeyedModel result = new MockKeyedModel.Query(mContext).id(42).first();
+        assertEquals("Goodbye World", result.title);
+        assertEquals(42, result.get_Id());
+        assertEquals(42, new MockKeyedModel.Query(mContext).select("title").first().get_Id());
+
+        // _id is read from the key
+        assertEquals("42", new MockKeyedModel.Query(mContext).distinct("_id")[0]);
+        assertEquals(Long.valueOf(1), new MockKeyedModel.Query(mContext).groupBy("_id").count().get("42"));
+        assertEquals(42.0, new MockKeyedModel.Query(mContext).max("_id"));
+
+        result.delete();
+        assertEquals(0, new MockKeyedModel.Query(mContext).count());
+    }
+
+    @Test
+    public void entityCache() {
+        new MockKeyedModel(mContext).dropTable();
+        EntityCache<MockKeyedModel> cache = EntityCache.get(MockKeyedModel.class);
+        assertEquals(0, cache.size());
+        for (long id = 1; id <= 4; id++) {
+            MockKeyedModel model = new MockKeyedModel(mContext);
+            model.id = id;
+            model.title = "Hello World";
+            model.save();
+        }
+
+        int hits = cache.hitCount();
+        int misses = cache.missCount();
+        MockKeyedModel result = new MockKeyedModel.Query(mContext).id(1).first();
+        assertEquals(misses + 1, cache.missCount());
+        MockKeyedModel copy = new MockKeyedModel.Query(mContext).id(1).first();
+        assertEquals(hits + 1, cache.hitCount());
+
+        // Every lookup gets its own copy, so unsaved changes aren't seen by anyone else
+        assertFalse(result == copy);
+        assertEquals(result.title, copy.title);
+        result.title = "Unsaved";
+        assertEquals("Hello World", new MockKeyedModel.Query(mContext).id(1).first().title);
+        assertEquals(hits + 2, cache.hitCount());
+
+        // Only lookups by every unique value are cached
+        new MockKeyedModel.Query(mContext).where("title", "Hello World").first();
+        assertEquals(hits + 2, cache.hitCount());
+        assertEquals(misses + 1, cache.missCount());
+
+        // Writes evict the rows they touch
+        result.title = "Goodbye World";
+        result.save();
+        assertEquals(0, cache.size());
+        assertEquals("Goodbye World", new MockKeyedModel.Query(mContext).id(1).first().title);
+        new MockKeyedModel.Query(mContext).id(1).update("title", "Hello Again");
+        assertEquals(0, cache.size());
+        assertEquals("Hello Again", new MockKeyedModel.Query(mContext).id(1).first().title);
+        new MockKeyedModel.Query(mContext).id(1).delete();
+        assertNull(new MockKeyedModel.Query(mContext).id(1).first());
+
+        // The least recently used rows are evicted past cacheSize
+        int evictions = cache.evictionCount();
+        new MockKeyedModel.Query(mContext).id(2).first();
+        new MockKeyedModel.Query(mContext).id(3).first();
+        new MockKeyedModel.Query(mContext).id(4).first();
+        assertEquals(2, cache.size());
+        assertEquals(evictions + 1, cache.evictionCount());
+        misses = cache.missCount();
+        new MockKeyedModel.Query(mContext).id(2).first();
+        assertEquals(misses + 1, cache.missCount());
+
+        EntityCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void queryCache() {
+        new MockModel.Query(mContext).myInt(1).insert();
+        new MockModel.Query(mContext).myInt(2).insert();
+
+        int hits = QueryCache.hitCount();
+        int misses = QueryCache.missCount();
+        List<MockModel> results = new MockModel.Query(mContext).orderByMyIntAsc().cached().all();
+        assertEquals(2, results.size());
+        assertEquals(misses + 1, QueryCache.missCount());
+
+        // Every caller gets their own copy of the list, and of its rows
+        results.get(0).setTitle("Unsaved");
+        results.clear();
+        List<MockModel> cached = new MockModel.Query(mContext).orderByMyIntAsc().cached().all();
+        assertEquals(2, cached.size());
+        assertNull(cached.get(0).getTitle());
+        assertEquals(hits + 1, QueryCache.hitCount());
+
+        // Queries with other params, or that aren't cached, miss
+        assertEquals(1, new MockModel.Query(mContext).myInt(2).cached().count());
+        assertEquals(misses + 2, QueryCache.missCount());
+        new MockModel.Query(mContext).orderByMyIntAsc().all();
+        assertEquals(hits + 1, QueryCache.hitCount());
+
+        // Writes drop the model's results
+        new MockModel.Query(mContext).myInt(2).insert();
+        assertEquals(2, new MockModel.Query(mContext).myInt(2).cached().count());
+        assertEquals(3, new MockModel.Query(mContext).orderByMyIntAsc().cached().all().size());
+        new MockModel.Query(mContext).myInt(2).delete();
+        assertEquals(0, new MockModel.Query(mContext).myInt(2).cached().count());
+        assertEquals(hits + 1, QueryCache.hitCount());
+    }
+
+    @Test
+    public void mirror() {
+        new MockMirroredModel(mContext).dropTable();
+        String[][] rows = { { "usd", "fiat" }, { "eur", "fiat" }, { "btc", "crypto" } };
+        for (int i = 0; i < rows.length; i++) {
+            MockMirroredModel model = new MockMirroredModel(mContext);
+            model.code = rows[i][0];
+            model.category = rows[i][1];
+            model.rank = i;
+            model.save();
+        }
+
+        assertEquals("fiat", new MockMirroredModel.Query(mContext).code("eur").first().category);
+        TableMirror<MockMirroredModel> mirror = ModelInfo.get(MockMirroredModel.class).getMirror();
+        assertTrue(mirror.isLoaded());
+        assertEquals(2, new MockMirroredModel.Query(mContext).category("fiat").count());
+        assertTrue(new MockMirroredModel.Query(mContext).code("btc").exists());
+        assertFalse(new MockMirroredModel.Query(mContext).code("gbp").exists());
+        List<MockMirroredModel> fiat = new MockMirroredModel.Query(mContext).category("fiat").orderBy("rank DESC").all();
+        assertEquals("eur", fiat.get(0).code);
+        assertEquals("usd", fiat.get(1).code);
+        assertEquals("eur", new MockMirroredModel.Query(mContext).orderBy("code").limit(1, 1).get(0).code);
+
+        // Rows are read from memory, so a write behind the library's back isn't seen
+        ModelDataSource<MockMirroredModel> dataSource = new MockMirroredModel.Query(mContext).open();
+        try {
+            dataSource.compileStatement("UPDATE MockMirroredModel SET rank = 10").executeUpdateDelete();
+        } finally {
+            dataSource.close();
+        }
+        assertEquals(0, new MockMirroredModel.Query(mContext).code("usd").first().rank);
+
+        // Changing a returned row doesn't change the mirror
+        new MockMirroredModel.Query(mContext).code("usd").first().category = "crypto";
+        assertEquals(1, new MockMirroredModel.Query(mContext).category("crypto").count());
+
+        // Writes through the library update the mirror
+        MockMirroredModel usd = new MockMirroredModel.Query(mContext).code("usd").first();
+        usd.category = "crypto";
+        usd.save();
+        assertEquals(2, new MockMirroredModel.Query(mContext).category("crypto").count());
+        new MockMirroredModel.Query(mContext).code("btc").delete();
+        assertEquals(1, new MockMirroredModel.Query(mContext).category("crypto").count());
+        usd.delete();
+        assertNull(new MockMirroredModel.Query(mContext).code("usd").first());
+        assertTrue(mirror.isLoaded());
+
+        // Writes that can't be applied row by row drop the mirror until it's next read
+        new MockMirroredModel.Query(mContext).where(Param.greaterThan("rank", 0)).update("rank", 5);
+        assertFalse(mirror.isLoaded());
+        assertEquals(5, new MockMirroredModel.Query(mContext).code("eur").first().rank);
+        assertTrue(mirror.isLoaded());
+
+        // Numbers match by value, like they do in SQLite
+        MockMirroredModel eur = new MockMirroredModel.Query(mContext).code("eur").first();
+        eur.price = 2;
+        eur.save();
+        assertTrue(mirror.isLoaded());
+        assertEquals(1, new MockMirroredModel.Query(mContext).where("price", 2).count());
+        assertEquals(1, new MockMirroredModel.Query(mContext).where("price", 2L).count());
+        assertEquals(0, new MockMirroredModel.Query(mContext).where("price", 2.5f).count());
+        assertEquals(1, new MockMirroredModel.Query(mContext).where("rank", 5.0f).count());
+        assertEquals(1, new MockMirroredModel.Query(mContext).where("rank", "5").count());
+    }
+
+    @Test
+    public void observers() {
+        final List<ChangeSet> changes = new ArrayList<>();
+        Model.Observer observer = new Model.Observer() {
+            @Override
+            public void onChange() {
+                fail();
+            }
+
+            @Override
+            public void onChange(ChangeSet changeSet) {
+                changes.add(changeSet);
+            }
+        };
+        MockModel.registerObserver(observer);
+        try {
+            MockModel model = new MockModel.Query(mContext).title("Hello World").insert();
+            assertEquals(1, changes.size());
+            ChangeSet.Change change = changes.get(0).getChanges().get(0);
+            assertEquals(ChangeSet.Operation.INSERT, change.getOperation());
+            assertEquals(model.get_Id(), change.getId());
+            assertNull(change.getKey());
+
+            // Bursts are delivered together once the window ends, on the executor
+            final List<Runnable> posted = new ArrayList<>();
+            Model.setObserverExecutor(posted::add);
+            Model.setObserverCoalescingWindow(1, TimeUnit.HOURS);
+            model.setTitle("Goodbye World");
+            model.save();
+            model.delete();
+            assertTrue(posted.isEmpty());
+
+            ObserverRegistry.flush();
+            assertEquals(1, posted.size());
+            posted.get(0).run();
+            assertEquals(2, changes.size());
+            ChangeSet burst = changes.get(1);
+            assertTrue(burst.isComplete());
+            assertEquals(2, burst.getChanges().size());
+            assertEquals(ChangeSet.Operation.SAVE, burst.getChanges().get(0).getOperation());
+            assertEquals(ChangeSet.Operation.DELETE, burst.getChanges().get(1).getOperation());
+            assertEquals(model.get_Id(), burst.getChanges().get(1).getId());
+
+            // Bulk updates and deletes don't say which rows they changed
+            Model.setObserverCoalescingWindow(0, TimeUnit.MILLISECONDS);
+            Model.setObserverExecutor(null);
+            new MockModel.Query(mContext).title("Hello World").insert();
+            new MockModel.Query(mContext).update("title", "Goodbye World");
+            assertEquals(4, changes.size());
+            assertFalse(changes.get(3).isComplete());
+            new MockModel.Query(mContext).title("Goodbye World").delete();
+            assertEquals(5, changes.size());
+            assertFalse(changes.get(4).isComplete());
+        } finally {
+            Model.setObserverCoalescingWindow(0, TimeUnit.MILLISECONDS);
+            Model.setObserverExecutor(null);
+            MockModel.unregisterObserver(observer);
+        }
+    }
+
+    @Test
+    public void withoutRowidLayout() {
+        new MockStringKeyedModel(mContext).dropTable();
+
+        MockStringKeyedModel first = new MockStringKeyedModel(mContext);
+        first.key = "a";
+        first.title = "Hello World";
+        ModelDataSource<MockStringKeyedModel> dataSource = new MockStringKeyedModel.Query(mContext).open();
+        try {
+            assertTrue(dataSource.upsert(first));
+        } finally {
+            dataSource.close();
+        }
+
+        MockStringKeyedModel second = new MockStringKeyedModel(mContext);
+        second.key = "b";
+        second.save();
+
+        first.title = "Goodbye World";
+        first.save();
+
+        assertEquals(2, new MockStringKeyedModel.Query(mContext).count());
+        MockStringKeyedModel result = new MockStringKeyedModel.Query(mContext).key("a").first();
+        assertEquals("Goodbye World", result.title);
+        assertEquals(first.get_Id(), result.get_Id());
+        assertTrue(result.get_Id() != new MockStringKeyedModel.Query(mContext).key("b").first().get_Id());
+    }
+
+    @Test
+    public void aggregates() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).myLong(1).insert();
+        new MockModel.Query(mContext).title("Hello World").myInt(2).myLong(1).insert();
+        new MockModel.Query(mContext).title("Goodbye World").myInt(6).myLong(2).insert();
+
+        assertEquals(9.0, new MockModel.Query(mContext).sum("my_int"));
+        assertEquals(1.0, new MockModel.Query(mContext).min("my_int"));
+        assertEquals(6.0, new MockModel.Query(mContext).max("my_int"));
+        assertEquals(3.0, new MockModel.Query(mContext).avg("my_int"));
+        assertEquals(1.5, new MockModel.Query(mContext).title("Hello World").avg("my_int"));
+
+        assertEquals(0.0, new MockModel.Query(mContext).myInt(7).sum("my_int"));
+        assertTrue(Double.isNaN(new MockModel.Query(mContext).myInt(7).max("my_int")));
+
+        String[] titles = new MockModel.Query(mContext).orderBy("title ASC").distinct("title");
+        assertEquals(2, titles.length);
+        assertEquals("Goodbye World", titles[0]);
+        assertEquals("Hello World", titles[1]);
+
+        Map<String, Long> counts = new MockModel.Query(mContext).groupBy("title").count();
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(2), counts.get("Hello World"));
+        assertEquals(Long.valueOf(1), counts.get("Goodbye World"));
+
+        Map<String, Double> sums = new MockModel.Query(mContext).groupBy("my_long").sum("my_int");
+        assertEquals(3.0, sums.get("1"));
+        assertEquals(6.0, sums.get("2"));
+
+        try {
+            new MockModel.Query(mContext).sum("my_int) FROM MockModel; --");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+        try {
+            new MockModel.Query(mContext).groupBy("title").max("unknown");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+
+        // Only numbers can be aggregated
+        try {
+            new MockModel.Query(mContext).min("title");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+        try {
+            new MockModel.Query(mContext).groupBy("my_long").max("title");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+    }
+
+    @Test
+    public void exists() {
+        assertFalse(new MockModel.Query(mContext).exists());
+
+        new MockModel.Query(mContext).title("Hello World").myInt(1).insert();
+        assertTrue(new MockModel.Query(mContext).exists());
+        assertTrue(new MockModel.Query(mContext).title("Hello World").exists());
+        assertFalse(new MockModel.Query(mContext).title("Goodbye World").exists());
+        assertTrue(new MockModel.Query(mContext).where(Param.greaterThan("my_int", 0)).exists());
+    }
+
+    @Test
+    public void update() {
+        new MockModel.Query(mContext).title("Hello World").myInt(1).insert();
+        new MockModel.Query(mContext).title("Hello World").myInt(2).insert();
+        new MockModel.Query(mContext).title("Goodbye World").myInt(3).insert();
+
+        final int[] changes = new int[1];
+        Model.Observer observer = () -> changes[0]++;
+        MockModel.registerObserver(observer);
+        try {
+            assertEquals(2, new MockModel.Query(mContext).title("Hello World").update("my_long", 5L));
+            assertEquals(1, changes[0]);
+            assertEquals(2, new MockModel.Query(mContext).myLong(5).count());
+
+            assertEquals(1, new MockModel.Query(mContext).myInt(3).update(new Param("title", "Hello World"), new Param("my_bool", true)));
+            assertEquals(2, changes[0]);
+            assertEquals(3, new MockModel.Query(mContext).title("Hello World").count());
+            assertTrue(new MockModel.Query(mContext).myInt(3).first().getMyBool());
+
+            assertEquals(0, new MockModel.Query(mContext).myInt(4).update("title", "Unknown"));
+            assertEquals(2, changes[0]);
+
+            byte[] bytes = new byte[] { 1, 2, 3 };
+            assertEquals(1, new MockModel.Query(mContext).myInt(1).update("my_byte_array", bytes));
+            assertTrue(Arrays.equals(bytes, new MockModel.Query(mContext).myInt(1).first().getMyByteArray()));
+        } finally {
+            MockModel.unregisterObserver(observer);
+        }
+
+        try {
+            new MockModel.Query(mContext).update("unknown", 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+    }
+
+    @Test
+    public void page() {
+        for (int i = 1; i <= 5; i++) {
+            new MockModel.Query(mContext).myInt(i / 2).insert();
+        }
+
+        List<Integer> values = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        Page<MockModel> page = new MockModel.Query(mContext).seek("my_int").page(2);
+        while (true) {
+            for (MockModel mockModel : page.getItems()) {
+                values.add(mockModel.getMyInt());
+                ids.add(mockModel.get_Id());
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = new MockModel.Query(mContext).after(page.getNextToken()).page(2);
+        }
+        assertEquals(5, values.size());
+        assertEquals(5, new java.util.HashSet<>(ids).size());
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i - 1) <= values.get(i));
+        }
+
+        page = new MockModel.Query(mContext).before("my_int", 2, 0).page(10);
+        assertEquals(3, page.getItems().size());
+        assertEquals(1, page.getItems().get(0).getMyInt());
+        assertEquals(0, page.getItems().get(2).getMyInt());
+        assertFalse(page.hasNext());
+
+        try {
+            new MockModel.Query(mContext).page(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // ignored
+        }
+    }
 }
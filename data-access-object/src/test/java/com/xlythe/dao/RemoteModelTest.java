@@ -13,6 +13,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
@@ -33,6 +34,10 @@ public class RemoteModelTest {
         mMockServer = new MockServer();
         MockRemoteModel.setServer(mMockServer);
 
+        // Parse responses on the test thread, so that they're finished once the main looper is flushed
+        MockRemoteModel.setExecutor(Runnable::run);
+        MockRemoteModel.setCallbackExecutor(null);
+
         // Print out logs to the console
         ShadowLog.stream = System.out;
 
@@ -132,19 +137,47 @@ public class RemoteModelTest {
         Robolectric.flushForegroundThreadScheduler();
     }
 
+    @Test
+    public void malformedResponse() {
+        mMockServer.setResponse(201, new JSONResult("[]"));
+
+        final Throwable[] error = new Throwable[1];
+        new MockRemoteModel.Query(mContext).id(1).insert(new Callback<MockRemoteModel>() {
+            @Override
+            public void onSuccess(MockRemoteModel object) {
+                throw new IllegalStateException("Expected a failure");
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                error[0] = throwable;
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+        assertNotNull(error[0]);
+    }
+
     @Test
     public void update() {
         mMockServer.setResponse(201, new JSONResult("{\"id\":1,\"title\":\"\",\"my_long\":0,\"my_bool\":\"false\",\"my_int\":0}"));
 
-        MockRemoteModel model = new MockRemoteModel(mContext);
+        // Hold on to callbacks, to see what happens before they run
+        final List<Runnable> callbacks = new ArrayList<>();
+        MockRemoteModel.setCallbackExecutor(callbacks::add);
+
+        final MockRemoteModel model = new MockRemoteModel(mContext);
+        model.my_int = 5;
+        final boolean[] succeeded = new boolean[1];
         model.save(new Callback<MockRemoteModel>() {
             @Override
             public void onSuccess(MockRemoteModel object) {
+                assertTrue(object == model);
                 assertEquals(1, object.id);
                 assertEquals("", object.title);
                 assertEquals(0, object.my_long);
                 assertFalse(object.my_bool);
                 assertEquals(0, object.my_int);
+                succeeded[0] = true;
             }
 
             @Override
@@ -152,6 +185,20 @@ public class RemoteModelTest {
                 throw new IllegalStateException(throwable);
             }
         });
+        Robolectric.flushForegroundThreadScheduler();
+
+        // The server's copy is cached, but the model isn't touched until the callback executor runs
+        MockRemoteModel cached = new MockRemoteModel.Query(mContext).id(1).first();
+        assertNotNull(cached);
+        assertEquals(0, model.id);
+        assertEquals(5, model.my_int);
+        assertEquals(0, model.get_Id());
+
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+        assertTrue(succeeded[0]);
+        assertEquals(cached.get_Id(), model.get_Id());
     }
 
     @Test
@@ -173,4 +220,181 @@ public class RemoteModelTest {
         Robolectric.flushForegroundThreadScheduler();
     }
 
+
+    @Test
+    public void refresh() {
+        // Seed the cache with rows that the server no longer has
+        new MockRemoteModel.Query(mContext).id(1).title("Old").insert();
+        new MockRemoteModel.Query(mContext).id(2).title("Old").insert();
+        assertEquals(2, new MockRemoteModel.Query(mContext).count());
+
+        mMockServer.setResponse(200, new JSONResult("[{\"id\":1,\"title\":\"New\",\"my_long\":0,\"my_bool\":\"false\",\"my_int\":0}]"));
+        new MockRemoteModel.Query(mContext).all(new Callback<List<MockRemoteModel>>() {
+            @Override
+            public void onSuccess(List<MockRemoteModel> object) {
+                assertEquals(1, object.size());
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+
+        // The stale rows are gone, and the remaining row was replaced
+        assertEquals(1, new MockRemoteModel.Query(mContext).count());
+        assertEquals("New", new MockRemoteModel.Query(mContext).id(1).first().title);
+    }
+
+    @Test
+    public void forEach() {
+        new MockRemoteModel.Query(mContext).id(3).title("Old").insert();
+
+        mMockServer.setResponse(200, new JSONResult("[{\"id\":1,\"title\":\"Hello\"},{\"id\":2,\"title\":\"World\"}]"));
+        final List<String> titles = new ArrayList<>();
+        final boolean[] done = new boolean[1];
+        new MockRemoteModel.Query(mContext).forEach(model -> titles.add(model.title), new Callback<Void>() {
+            @Override
+            public void onSuccess(Void object) {
+                done[0] = true;
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertTrue(done[0]);
+        assertEquals(2, titles.size());
+        assertTrue(titles.contains("Hello"));
+        assertTrue(titles.contains("World"));
+        assertEquals(2, new MockRemoteModel.Query(mContext).count());
+    }
+
+    @Test
+    public void callbackExecutor() {
+        mMockServer.setResponse(200, new JSONResult("[{\"id\":1,\"title\":\"Hello World\",\"my_long\":1000,\"my_bool\":\"true\",\"my_int\":1}]"));
+
+        final List<Runnable> callbacks = new ArrayList<>();
+        new MockRemoteModel.Query(mContext).callbackExecutor(callbacks::add).all(new Callback<List<MockRemoteModel>>() {
+            @Override
+            public void onSuccess(List<MockRemoteModel> object) {
+                assertEquals(1, object.size());
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+
+        // The cache is written before the callback is handed to its executor
+        assertEquals(1, callbacks.size());
+        assertEquals(1, new MockRemoteModel.Query(mContext).count());
+        callbacks.get(0).run();
+    }
+
+    @Test
+    public void stream() throws Exception {
+        String json = "[{\"id\":1,\"title\":\"Hello\",\"my_long\":9007199254740993,\"my_bool\":true,\"my_int\":1},"
+                + "{\"id\":2,\"title\":\"World\",\"my_long\":2,\"my_bool\":false,\"my_int\":2}]";
+        mMockServer.setResponse(200, new JSONResult(json.getBytes("UTF-8"), "UTF-8"));
+        new MockRemoteModel.Query(mContext).all(new Callback<List<MockRemoteModel>>() {
+            @Override
+            public void onSuccess(List<MockRemoteModel> object) {
+                assertEquals(2, object.size());
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+
+        MockRemoteModel result = new MockRemoteModel.Query(mContext).id(1).first();
+        assertEquals("Hello", result.title);
+        assertEquals(9007199254740993L, result.my_long);
+        assertTrue(result.my_bool);
+        assertEquals(2, new MockRemoteModel.Query(mContext).count());
+
+        // A response that's cut off partway through leaves the cache untouched
+        mMockServer.setResponse(200, new JSONResult("[{\"id\":3,\"title\":\"Cut\"},{\"id\":"));
+        final boolean[] failed = new boolean[1];
+        new MockRemoteModel.Query(mContext).all(new Callback<List<MockRemoteModel>>() {
+            @Override
+            public void onSuccess(List<MockRemoteModel> object) {
+                throw new IllegalStateException("Expected the response to fail to parse");
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                failed[0] = true;
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+        assertTrue(failed[0]);
+        assertEquals(2, new MockRemoteModel.Query(mContext).count());
+    }
+
+    @Test
+    public void page() throws Exception {
+        // Rows before the page, the page's token, a row the server has since deleted, and a row after the page
+        new MockRemoteModel.Query(mContext).id(1).myInt(1).insert();
+        MockRemoteModel token = new MockRemoteModel.Query(mContext).id(2).myInt(2).insert();
+        new MockRemoteModel.Query(mContext).id(5).myInt(3).insert();
+        new MockRemoteModel.Query(mContext).id(6).myInt(5).insert();
+
+        mMockServer.setResponse(200, new JSONResult("[{\"id\":3,\"title\":\"Hello\",\"my_long\":0,\"my_bool\":false,\"my_int\":3},"
+                + "{\"id\":4,\"title\":\"World\",\"my_long\":0,\"my_bool\":false,\"my_int\":4}]"));
+
+        final List<Page<MockRemoteModel>> pages = new ArrayList<>();
+        new MockRemoteModel.Query(mContext).after("my_int", 2, token.get_Id()).page(2, new Callback<Page<MockRemoteModel>>() {
+            @Override
+            public void onSuccess(Page<MockRemoteModel> page) {
+                pages.add(page);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(2, mMockServer.getLastParams().getInt("limit"));
+        assertEquals("my_int", mMockServer.getLastParams().getString("order_by"));
+        assertEquals("asc", mMockServer.getLastParams().getString("order"));
+        assertEquals(2, mMockServer.getLastParams().getInt("after"));
+        // The server is sent the row's key, not its local _id
+        assertEquals(2, mMockServer.getLastParams().getInt("after_id"));
+        assertFalse(mMockServer.getLastParams().has("offset"));
+
+        assertEquals(1, pages.size());
+        assertEquals(2, pages.get(0).getItems().size());
+        assertTrue(pages.get(0).hasNext());
+        assertEquals(4, pages.get(0).getNextToken().getValue());
+
+        // Only the rows within the page were replaced
+        assertEquals(5, new MockRemoteModel.Query(mContext).count());
+        assertNull(new MockRemoteModel.Query(mContext).id(5).first());
+        assertNotNull(new MockRemoteModel.Query(mContext).id(1).first());
+        assertNotNull(new MockRemoteModel.Query(mContext).id(6).first());
+
+        // Without a cached row for the token, there's no key to send
+        new MockRemoteModel.Query(mContext).after("my_int", 2, 1000).page(2, new Callback<Page<MockRemoteModel>>() {
+            @Override
+            public void onSuccess(Page<MockRemoteModel> page) {}
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+        Robolectric.flushForegroundThreadScheduler();
+        assertFalse(mMockServer.getLastParams().has("after_id"));
+    }
 }
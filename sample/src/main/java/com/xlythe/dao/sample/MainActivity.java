@@ -9,6 +9,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import com.xlythe.dao.ChangeSet;
 import com.xlythe.dao.Model;
 import com.xlythe.dao.sample.model.Note;
 
@@ -80,6 +81,10 @@ public class MainActivity extends AppCompatActivity implements Model.Observer {
 
     private void invalidateCursor() {
         mNoteAdapter.setCursor(new Note.Query(this).orderByTimestamp().cursor());
+        updateEmptyView();
+    }
+
+    private void updateEmptyView() {
         findViewById(R.id.empty_view).setVisibility(mNoteAdapter.getCursor().getCount() > 0 ? View.GONE : View.VISIBLE);
     }
 
@@ -88,8 +93,16 @@ public class MainActivity extends AppCompatActivity implements Model.Observer {
         invalidateCursor();
     }
 
+    @Override
+    public void onChange(ChangeSet changes) {
+        // Only the notes that changed are rebound, so the list animates instead of redrawing
+        mNoteAdapter.swapCursor(new Note.Query(this).orderByTimestamp().cursor(), changes);
+        updateEmptyView();
+    }
+
     @Override
     protected void onDestroy() {
+        Note.unregisterObserver(this);
         mNoteAdapter.close();
         super.onDestroy();
     }
@@ -156,6 +169,45 @@ public class MainActivity extends AppCompatActivity implements Model.Observer {
             notifyDataSetChanged();
         }
 
+        /**
+         * Swaps in the new cursor. If a single note changed, only that note is rebound.
+         */
+        @SuppressLint("NotifyDataSetChanged")
+        void swapCursor(Note.Cursor cursor, ChangeSet changes) {
+            Note.Cursor oldCursor = mCursor;
+            mCursor = cursor;
+            if (oldCursor == null || !changes.isComplete() || changes.getChanges().size() != 1) {
+                notifyDataSetChanged();
+            } else {
+                long id = changes.getChanges().get(0).getId();
+                int from = indexOf(oldCursor, id);
+                int to = indexOf(cursor, id);
+                if (from == -1 && to != -1) {
+                    notifyItemInserted(to);
+                } else if (from != -1 && to == -1) {
+                    notifyItemRemoved(from);
+                } else if (from != -1) {
+                    if (from != to) {
+                        notifyItemMoved(from, to);
+                    }
+                    notifyItemChanged(to);
+                }
+            }
+            if (oldCursor != null) {
+                oldCursor.close();
+            }
+        }
+
+        private static int indexOf(Note.Cursor cursor, long id) {
+            int column = cursor.getColumnIndex("_id");
+            for (int i = 0; cursor.moveToPosition(i); i++) {
+                if (cursor.getLong(column) == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
         Note.Cursor getCursor() {
             return mCursor;
         }